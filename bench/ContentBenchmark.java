@@ -0,0 +1,119 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Times the GapContent that documents use by default against the
+*	PieceContent, on texts of 1, 10 and 50 MB. It isn't part of the
+*	editor; run it from the top folder with
+*
+*		javac -d bench/out -cp bin src/PieceContent.java bench/ContentBenchmark.java
+*		java -Xmx2g -cp bench/out:bin ContentBenchmark
+*/
+
+
+import java.util.Random;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.GapContent;
+import javax.swing.text.Segment;
+
+
+public class ContentBenchmark {
+	private static final int[] SIZES = {1, 10, 50};
+	private static final int EDITS = 2000, TYPED = 20000, READS = 20000;
+
+	public static void main(String[] args) throws Exception {
+		System.out.printf("%-13s %9s %9s %9s %9s %9s %9s%n", "MB, ms", "load",
+				"scattered", "removes", "typing", "reads", "getString");
+
+		for (int i = 0; i < SIZES.length; i++) {
+			String text = generate(SIZES[i] * 1024 * 1024);
+
+			// Each content is run once first so both are timed warm.
+			run(new GapContent(), text, null);
+			run(new PieceContent(), text, null);
+
+			run(new GapContent(), text, SIZES[i] + " Gap");
+			run(new PieceContent(), text, SIZES[i] + " Piece");
+		}
+	}
+
+	private static String generate(int size) {
+		// Lines of code-like text, the same every time.
+
+		Random random = new Random(1);
+		StringBuilder sb = new StringBuilder(size);
+
+		while (sb.length() < size) {
+			int indent = random.nextInt(4);
+			for (int i = 0; i < indent; i++) {
+				sb.append('\t');
+			}
+
+			sb.append("float value").append(random.nextInt(1000))
+				.append(" = map(mouseX, 0, width, 0, ")
+				.append(random.nextInt(255)).append(");\n");
+		}
+
+		sb.setLength(size);
+		return sb.toString();
+	}
+
+	private static void run(AbstractDocument.Content content, String text, String name)
+						throws Exception {
+		Random random = new Random(2);
+		long[] times = new long[6];
+
+		long start = System.nanoTime();
+		content.insertString(0, text);
+		times[0] = System.nanoTime() - start;
+
+		// Single characters typed at places far apart, such as when
+		// editing between two parts of a file.
+		start = System.nanoTime();
+		for (int i = 0; i < EDITS; i++) {
+			int where = (i % 2 == 0) ? random.nextInt(1000) :
+					content.length() - 1 - random.nextInt(1000);
+			content.insertString(where, "x");
+		}
+		times[1] = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < EDITS; i++) {
+			content.remove(random.nextInt(content.length() - 10), 1);
+		}
+		times[2] = System.nanoTime() - start;
+
+		// Typing in one place, which the gap buffer is best at.
+		int where = content.length() / 2;
+		start = System.nanoTime();
+		for (int i = 0; i < TYPED; i++) {
+			content.insertString(where + i, "y");
+		}
+		times[3] = System.nanoTime() - start;
+
+		// Reading a line's worth of text at a time, as the views do.
+		Segment segment = new Segment();
+		long sum = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < READS; i++) {
+			content.getChars(random.nextInt(content.length() - 80), 80, segment);
+			sum += segment.array[segment.offset];
+		}
+		times[4] = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		sum += content.getString(0, content.length()).length();
+		times[5] = System.nanoTime() - start;
+
+		// The sum is printed so that the reads can't be skipped.
+		if (name != null) {
+			System.out.printf("%-13s", name);
+			for (int i = 0; i < times.length; i++) {
+				System.out.printf(" %9.2f", times[i] / 1e6);
+			}
+			System.out.printf("   (%d)%n", sum % 10);
+		}
+	}
+}
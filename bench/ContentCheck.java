@@ -0,0 +1,205 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Checks the PieceContent against the GapContent, making the same random
+*	inserts, removes, positions, undos and redos in both and comparing the
+*	text and every position after each step. It isn't part of the editor;
+*	run it from the top folder with
+*
+*		javac -d bench/out -cp bin src/PieceContent.java bench/ContentCheck.java
+*		java -cp bench/out:bin ContentCheck [seed]
+*
+*	When positions are collapsed together by a remove, the GapContent hands
+*	a new position at their offset one of theirs, whichever its binary
+*	search lands on, so where it goes on undo is down to chance. Those are
+*	left out of the random comparison, and the PieceContent is checked on
+*	its own to move a new position the way any insert does.
+*/
+
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.GapContent;
+import javax.swing.text.Position;
+import javax.swing.undo.UndoableEdit;
+
+
+public class ContentCheck {
+	private static final int STEPS = 50000, POSITIONS = 300;
+
+	public static void main(String[] args) throws Exception {
+		long seed = (args.length > 0) ? Long.parseLong(args[0]) : 1;
+
+		boolean ok = checkUndoAfterRemove();
+		ok &= checkRandom(seed);
+
+		System.out.println(ok ? "ok" : "failed");
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean checkUndoAfterRemove() throws BadLocationException {
+		// "c czy" has " cz" removed to leave "cy", then a position is
+		// made before the y and the remove is undone. Both contents
+		// move the position along with the y, to 4, when there were no
+		// positions in the removed text. With some, the ones that were
+		// there go back where they were and the new one still moves.
+
+		AbstractDocument.Content[] contents = {new GapContent(), new PieceContent()};
+
+		for (int i = 0; i < contents.length; i++) {
+			AbstractDocument.Content c = contents[i];
+			c.insertString(0, "c czy");
+
+			UndoableEdit edit = c.remove(1, 3);
+			Position p = c.createPosition(1);
+			edit.undo();
+
+			if (p.getOffset() != 4) {
+				return fail(c, "new position at " + p.getOffset() + ", not 4");
+			}
+		}
+
+		PieceContent c = new PieceContent();
+		c.insertString(0, "c czy");
+
+		Position[] old = {c.createPosition(1), c.createPosition(2), c.createPosition(3)};
+		UndoableEdit edit = c.remove(1, 3);
+		Position p = c.createPosition(1);
+		edit.undo();
+
+		for (int i = 0; i < old.length; i++) {
+			if (old[i].getOffset() != i + 1) {
+				return fail(c, "old position at " + old[i].getOffset() +
+						", not " + (i + 1));
+			}
+		}
+
+		if (p.getOffset() != 4) {
+			return fail(c, "new position at " + p.getOffset() + ", not 4");
+		}
+
+		return true;
+	}
+
+	private static boolean checkRandom(long seed) throws BadLocationException {
+		Random random = new Random(seed);
+		PieceContent piece = new PieceContent();
+		GapContent gap = new GapContent();
+
+		ArrayList<Position> piecePositions = new ArrayList<Position>();
+		ArrayList<Position> gapPositions = new ArrayList<Position>();
+		ArrayList<UndoableEdit[]> edits = new ArrayList<UndoableEdit[]>();
+
+		for (int step = 0; step < STEPS; step++) {
+			int length = gap.length();
+			int op = random.nextInt(10);
+
+			if (op < 4) {
+				int where = random.nextInt(length);
+				String s = word(random, (random.nextInt(5) == 0) ?
+						random.nextInt(200) + 1 : random.nextInt(4) + 1);
+
+				edits.add(new UndoableEdit[] {
+					piece.insertString(where, s), gap.insertString(where, s)});
+
+				// Sometimes typing carries on after it.
+				if (random.nextBoolean()) {
+					where += s.length();
+					edits.add(new UndoableEdit[] {
+						piece.insertString(where, "x"), gap.insertString(where, "x")});
+				}
+			} else if (op < 7 && length > 1) {
+				int where = random.nextInt(length - 1);
+				int n = Math.min(length - 1 - where, random.nextInt(50));
+
+				edits.add(new UndoableEdit[] {piece.remove(where, n), gap.remove(where, n)});
+			} else if (op < 9) {
+				int where = random.nextInt(length);
+				Position p = piece.createPosition(where);
+				Position g = gap.createPosition(where);
+
+				if (!contains(gapPositions, g)) {
+					piecePositions.add(p);
+					gapPositions.add(g);
+				}
+
+				if (piecePositions.size() > POSITIONS) {
+					int k = random.nextInt(piecePositions.size());
+					piecePositions.remove(k);
+					gapPositions.remove(k);
+				}
+			} else if (!edits.isEmpty()) {
+				// Undoes a few of the last edits, and maybe redoes them.
+				ArrayList<UndoableEdit[]> undone = new ArrayList<UndoableEdit[]>();
+				int n = Math.min(edits.size(), 1 + random.nextInt(8));
+
+				for (int i = 0; i < n; i++) {
+					UndoableEdit[] e = edits.remove(edits.size() - 1);
+					if (e[0] != null) {
+						e[0].undo();
+						e[1].undo();
+						undone.add(0, e);
+					}
+				}
+
+				if (random.nextBoolean()) {
+					for (int i = 0; i < undone.size(); i++) {
+						undone.get(i)[0].redo();
+						undone.get(i)[1].redo();
+					}
+				}
+
+				edits.clear();
+			}
+
+			if (!piece.getString(0, piece.length()).equals(gap.getString(0, gap.length()))) {
+				return fail(piece, "text differs at step " + step);
+			}
+
+			for (int i = 0; i < piecePositions.size(); i++) {
+				int p = piecePositions.get(i).getOffset();
+				int g = gapPositions.get(i).getOffset();
+
+				if (p != g) {
+					return fail(piece, "position at " + p + ", not " + g +
+							" at step " + step);
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean contains(ArrayList<Position> positions, Position p) {
+		// Whether p is one of positions itself, not just at the same offset.
+
+		for (int i = 0; i < positions.size(); i++) {
+			if (positions.get(i) == p) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static String word(Random random, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append((char) ('a' + random.nextInt(26)));
+		}
+
+		return sb.toString();
+	}
+
+	private static boolean fail(AbstractDocument.Content c, String message) {
+		System.out.println(c.getClass().getSimpleName() + ": " + message);
+		return false;
+	}
+}
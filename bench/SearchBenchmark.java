@@ -0,0 +1,170 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Times the ways the find panel has searched a document, on 5 MB of
+*	text, with and without ignoring case: a substring of the text compared
+*	at every offset, a compare at every offset through DocumentText, and
+*	the TextSearch it uses now. It isn't part of the editor; run it from
+*	the top folder with
+*
+*		javac -d bench/out -cp bin src/DocumentText.java src/TextSearch.java bench/SearchBenchmark.java
+*		java -cp bench/out:bin SearchBenchmark
+*/
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+
+
+public class SearchBenchmark {
+	private static final int SIZE = 5 * 1024 * 1024, RUNS = 5;
+
+	private static final String[] WORDS = {
+		"int", "float", "counter", "String", "println", "for", "if",
+		"return", "Counter", "COUNTER", "aaaa", "\u0130stanbul", "stra\u00dfe"
+	};
+
+	private static final String[] NEEDLES = {
+		"e", "if", "aa", "counter", "println(", "no such text here",
+		"\u0131stanbul", "STRASSE"
+	};
+
+	public static void main(String[] args) throws Exception {
+		Document doc = new PlainDocument();
+		doc.insertString(0, generate(SIZE), null);
+
+		// The gap is left in the middle, so the search has to read
+		// across it as it does after an edit.
+		doc.insertString(doc.getLength() / 2, "x", null);
+		String text = doc.getText(0, doc.getLength());
+
+		System.out.printf("%-21s %-6s %8s %10s %10s %10s%n", "best of " + RUNS + ", ms",
+				"case", "matches", "substring", "scan", "TextSearch");
+
+		for (int c = 0; c < 2; c++) {
+			boolean ignoreCase = (c == 1);
+
+			for (int i = 0; i < NEEDLES.length; i++) {
+				run(doc, text, NEEDLES[i], ignoreCase);
+			}
+		}
+	}
+
+	private static String generate(int size) {
+		// Lines of code-like text, the same every time.
+
+		Random random = new Random(1);
+		StringBuilder sb = new StringBuilder(size);
+
+		while (sb.length() < size) {
+			sb.append('\t').append(WORDS[random.nextInt(WORDS.length)])
+				.append(' ').append(WORDS[random.nextInt(WORDS.length)])
+				.append(" = ").append(random.nextInt(1000)).append(";\n");
+		}
+
+		sb.setLength(size);
+		return sb.toString();
+	}
+
+	private static void run(Document doc, String text, String needle, boolean ignoreCase)
+						throws Exception {
+		int[] substring = null, scan = null, search = null;
+		long[] times = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			substring = findBySubstring(text, needle, ignoreCase);
+			times[0] = Math.min(times[0], System.nanoTime() - start);
+
+			start = System.nanoTime();
+			scan = findByScan(doc, needle, ignoreCase);
+			times[1] = Math.min(times[1], System.nanoTime() - start);
+
+			start = System.nanoTime();
+			search = new TextSearch(needle, ignoreCase).findAll(doc);
+			times[2] = Math.min(times[2], System.nanoTime() - start);
+		}
+
+		System.out.printf("%-21s %-6s %8d", "\"" + needle + "\"",
+				ignoreCase ? "ignore" : "match", search.length);
+		for (int i = 0; i < times.length; i++) {
+			System.out.printf(" %10.1f", times[i] / 1e6);
+		}
+
+		// The scan folded cases differently to equalsIgnoreCase(),
+		// so it is only expected to agree when they are matched.
+		if (!Arrays.equals(substring, search)) {
+			System.out.print("   differs from substring");
+		} else if (!ignoreCase && !Arrays.equals(scan, search)) {
+			System.out.print("   differs from scan");
+		}
+		System.out.println();
+	}
+
+	private static int[] findBySubstring(String text, String needle, boolean ignoreCase) {
+		// Takes the needle's length of text at every offset and
+		// compares it as a String.
+
+		ArrayList<Integer> found = new ArrayList<Integer>();
+		int len = needle.length();
+
+		for (int i = 0; i < text.length() - len + 1; i++) {
+			String s = text.substring(i, i + len);
+
+			if (ignoreCase ? s.equalsIgnoreCase(needle) : s.equals(needle)) {
+				found.add(i);
+			}
+		}
+
+		return toArray(found);
+	}
+
+	private static int[] findByScan(Document doc, String needle, boolean ignoreCase) {
+		// Compares the needle char by char at every offset, reading
+		// the text through DocumentText.
+
+		ArrayList<Integer> found = new ArrayList<Integer>();
+		CharSequence haystack = new DocumentText(doc);
+		int len = needle.length();
+
+		for (int i = 0; i < haystack.length() - len + 1; i++) {
+			if (matches(haystack, i, needle, ignoreCase)) {
+				found.add(i);
+			}
+		}
+
+		return toArray(found);
+	}
+
+	private static boolean matches(CharSequence haystack, int start, String needle,
+						boolean ignoreCase) {
+		for (int i = 0; i < needle.length(); i++) {
+			char a = haystack.charAt(start + i);
+			char b = needle.charAt(i);
+
+			if (a != b && (!ignoreCase || (
+				Character.toUpperCase(a) != Character.toUpperCase(b) &&
+				Character.toLowerCase(a) != Character.toLowerCase(b))))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int[] toArray(ArrayList<Integer> list) {
+		int[] a = new int[list.size()];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = list.get(i);
+		}
+
+		return a;
+	}
+}
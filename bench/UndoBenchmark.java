@@ -0,0 +1,155 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Measures what 100k edits cost the undo history, with the oldest edits
+*	moved out to disk past 1 MB and with all of them kept in memory. The
+*	heap left after a GC is printed every 20k edits, along with what the
+*	history says it has in memory and on disk, then every edit is undone
+*	and redone to check the text comes back. It isn't part of the editor;
+*	run it from the top folder with
+*
+*		javac -d bench/out -cp bin src/*.java bench/UndoBenchmark.java
+*		java -cp bench/out:bin UndoBenchmark
+*/
+
+
+import java.util.Random;
+
+import javax.swing.JTextPane;
+
+import javax.swing.text.Document;
+
+
+public class UndoBenchmark {
+	private static final int EDITS = 100000, STEP = 20000, LINES = 2000;
+
+	// The Undo Memory settings to run with, in MB, where 0 keeps
+	// every edit in memory.
+	private static final int[] UNDO_MEMORY = {1, 0};
+
+	public static void main(String[] args) throws Exception {
+		// The keywords are read in for the highlighter, which is turned
+		// off so only the history is measured.
+		Defaults.init(args);
+		Defaults.HIGHLIGHT = false;
+
+		for (int i = 0; i < UNDO_MEMORY.length; i++) {
+			Defaults.UNDO_MEMORY = UNDO_MEMORY[i];
+
+			System.out.println((UNDO_MEMORY[i] == 0) ? "Everything in memory" :
+					"Past " + UNDO_MEMORY[i] + " MB on disk");
+			run();
+			System.out.println();
+		}
+	}
+
+	private static String generate() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < LINES; i++) {
+			sb.append("line ").append(i)
+				.append(" with enough text on it to edit in the middle of it\n");
+		}
+
+		return sb.toString();
+	}
+
+	private static long retained() {
+		// The heap in use once everything unreachable has been let go.
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void run() throws Exception {
+		JTextPane text = new JTextPane();
+		Document doc = text.getDocument();
+		EditManager edits = new EditManager(text, new HighlightManager());
+		Random random = new Random(1);
+
+		doc.insertString(0, generate(), null);
+		String first = doc.getText(0, doc.getLength());
+		long base = retained();
+
+		System.out.printf("%8s %10s %10s %10s%n", "edits", "heap KB", "memory KB", "disk KB");
+
+		// Typing somewhere and deleting as much somewhere else, or
+		// replacing a word, so the text stays the same size.
+		int count = 0, next = STEP;
+		while (count < EDITS) {
+			int length = doc.getLength();
+
+			if (random.nextInt(3) == 0) {
+				String typed = "typed " + (100000 + count);
+				int where = random.nextInt(length);
+
+				doc.insertString(where, typed, null);
+				edits.crack();
+				edits.add(typed, where);
+				edits.crack();
+
+				String gone;
+				do {
+					where = random.nextInt(doc.getLength() - typed.length());
+					gone = doc.getText(where, typed.length());
+				} while (gone.indexOf('\n') != -1);
+
+				doc.remove(where, typed.length());
+				edits.remove(gone, where, false);
+				edits.crack();
+				count += 2;
+			} else {
+				String old;
+				int where;
+				do {
+					where = random.nextInt(length - 20);
+					old = doc.getText(where, 12);
+				} while (old.indexOf('\n') != -1);
+
+				String replace = ("replace" + (10000 + count % 10000)).substring(0, 12);
+
+				doc.remove(where, old.length());
+				doc.insertString(where, replace, null);
+				edits.replace(old, replace, where);
+				count++;
+			}
+
+			if (count >= next) {
+				System.out.printf("%8d %10d %10d %10d%n", count,
+						(retained() - base) / 1024, edits.getMemoryUsed() / 1024,
+						edits.getDiskUsed() / 1024);
+				next += STEP;
+			}
+		}
+
+		String last = doc.getText(0, doc.getLength());
+
+		long start = System.nanoTime();
+		int undone = 0;
+		while (edits.undo()) {
+			undone++;
+		}
+		long undoTime = System.nanoTime() - start;
+		boolean backToFirst = doc.getText(0, doc.getLength()).equals(first);
+
+		start = System.nanoTime();
+		int redone = 0;
+		while (edits.redo()) {
+			redone++;
+		}
+		long redoTime = System.nanoTime() - start;
+		boolean backToLast = doc.getText(0, doc.getLength()).equals(last);
+
+		System.out.printf("undid %d in %.0f ms, %s%n", undone, undoTime / 1e6,
+				backToFirst ? "back to the start" : "NOT back to the start");
+		System.out.printf("redid %d in %.0f ms, %s%n", redone, redoTime / 1e6,
+				backToLast ? "back to the end" : "NOT back to the end");
+
+		edits.close();
+	}
+}
@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-12-18
-*	Modified: 2021-12-31
+*	Modified: 2026-10-18
 *
 *	Handles the change in color for the current line.
 */
@@ -15,28 +15,16 @@ import java.awt.Rectangle;
 
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
-import java.awt.event.KeyEvent;
-import java.awt.event.KeyListener;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
-import java.awt.event.MouseMotionListener;
 
 import javax.swing.JComponent;
 import javax.swing.JTextPane;
-import javax.swing.SwingUtilities;
-
-import javax.swing.event.CaretEvent;
-import javax.swing.event.CaretListener;
 
 import javax.swing.text.StyledDocument;
 
 
 @SuppressWarnings("serial")
-public class ActiveLine extends JComponent implements	KeyListener,
-							MouseListener,
-							MouseMotionListener,
-							ComponentListener,
-							CaretListener,
+public class ActiveLine extends JComponent implements	ComponentListener,
+							EditListener,
 							Runnable
 {
 	private JTextPane text;
@@ -69,22 +57,16 @@ public class ActiveLine extends JComponent implements	KeyListener,
 	public void setTextPane(JTextPane t) {
 		// Remove this from the old editor's listeners.
 		if (text != null) {
-			text.removeKeyListener(this);
-			text.removeMouseListener(this);
-			text.removeMouseMotionListener(this);
 			text.removeComponentListener(this);
-			text.removeCaretListener(this);
+			EditBus.get(text).removeEditListener(this);
 		}
 		
 		text = t;
 		
 		// Add this to the new editor's listeners.
 		if (text != null) {
-			text.addKeyListener(this);
-			text.addMouseListener(this);
-			text.addMouseMotionListener(this);
 			text.addComponentListener(this);
-			text.addCaretListener(this);
+			EditBus.get(text).addEditListener(this);
 			doc = text.getStyledDocument();
 		} else {
 			doc = null;
@@ -95,39 +77,15 @@ public class ActiveLine extends JComponent implements	KeyListener,
 		return text;
 	}
 	
-	public void keyPressed(KeyEvent ke) {
-		int k = ke.getKeyCode();
-		
-		if (	k == KeyEvent.VK_ENTER ||
-			k == KeyEvent.VK_DOWN ||
-			k == KeyEvent.VK_UP ||
-			k == KeyEvent.VK_LEFT ||
-			k == KeyEvent.VK_RIGHT ||
-			k == KeyEvent.VK_BACK_SPACE ||
-			k == KeyEvent.VK_TAB ||
-			k == KeyEvent.VK_KP_UP ||
-			k == KeyEvent.VK_KP_DOWN ||
-			k == KeyEvent.VK_KP_LEFT ||
-			k == KeyEvent.VK_KP_RIGHT ||
-			k == KeyEvent.VK_PAGE_UP ||
-			k == KeyEvent.VK_PAGE_DOWN)
-		{
-			SwingUtilities.invokeLater(this);
+	public void editsMade(EditBatch batch) {
+		// The line only changes if the caret moved, or if
+		// lines were added or removed before it.
+
+		if (batch.caretMoved() || batch.hasEdits()) {
+			run();
 		}
 	}
 	
-	public void mousePressed(MouseEvent me) {
-		SwingUtilities.invokeLater(this);
-	}
-	
-	public void mouseDragged(MouseEvent me) {
-		SwingUtilities.invokeLater(this);
-	}
-	
-	public void caretUpdate(CaretEvent ce) {
-		SwingUtilities.invokeLater(this);
-	}
-	
 	public void run() {
 		if (Defaults.ACTIVE_LINE) {
 			setLine(findLine(text.getCaretPosition()));
@@ -150,26 +108,8 @@ public class ActiveLine extends JComponent implements	KeyListener,
 		if (index < 0) {
 			return -1;
 		}
-		
-		String s = null;
-		try {
-			s = doc.getText(0, doc.getLength());
-		} catch (Exception e) {
-			ErrorMgr.show(e, "Error getting text for active line");
-		}
-		
-		int ln = 0;
-		for (int i = 0; i < s.length(); i++) {
-			if (i == index) {
-				return ln;
-			}
-			
-			if (s.charAt(i) == '\n') {
-				ln++;
-			}
-		}
 
-		return ln;
+		return LineIndex.get(doc).getLineOf(index);
 	}
 
 	private void setLine(int line) {
@@ -198,14 +138,7 @@ public class ActiveLine extends JComponent implements	KeyListener,
 		}
 	}
 
-	public void keyTyped(KeyEvent ke) {}
-	public void mouseReleased(MouseEvent me) {}
-	public void mouseClicked(MouseEvent me) {}
-	public void mouseExited(MouseEvent me) {}
-	public void mouseEntered(MouseEvent me) {}
-	public void keyReleased(KeyEvent ke) {}
 	public void componentHidden(ComponentEvent ce) {}
 	public void componentShown(ComponentEvent ce) {}
 	public void componentMoved(ComponentEvent ce) {}
-	public void mouseMoved(MouseEvent me) {}
 }
@@ -1,28 +1,22 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-12-23
-*	Modified: 2021-12-24
+*	Modified: 2026-10-18
 *
 *	Handles bracket matching. Only highlights if highlighting is on.
 */
 
 
-import java.awt.event.KeyEvent;
-import java.awt.event.KeyListener;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
-
 import java.util.ArrayList;
 
 import javax.swing.JTextPane;
-import javax.swing.SwingUtilities;
 
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
 
 
-public class BracketMatch implements MouseListener, KeyListener, Runnable {
+public class BracketMatch implements EditListener, Runnable {
 	private class Pair {
 		private int open;
 		private int close;
@@ -51,6 +45,15 @@ public class BracketMatch implements MouseListener, KeyListener, Runnable {
 	private StyledDocument doc;
 	
 	private Pair active = null;
+
+	// Highlighting is painted after it is worked out in the background,
+	// which can be after the brackets were painted, so they are painted
+	// again on top of it.
+	private Runnable repainter = new Runnable() {
+		public void run() {
+			paintBrackets(active);
+		}
+	};
 	
 	public BracketMatch() {
 		// Default constructor
@@ -71,15 +74,13 @@ public class BracketMatch implements MouseListener, KeyListener, Runnable {
 	
 	public void setTextPane(JTextPane tp) {
 		if (textPane != null) {
-			textPane.removeMouseListener(this);
-			textPane.removeKeyListener(this);
+			EditBus.get(textPane).removeEditListener(this);
 		}
 
 		textPane = tp;
 		
 		if (textPane != null) {
-			textPane.addMouseListener(this);
-			textPane.addKeyListener(this);
+			EditBus.get(textPane).addEditListener(this);
 			doc = textPane.getStyledDocument();
 		} else {
 			doc = null;
@@ -87,7 +88,15 @@ public class BracketMatch implements MouseListener, KeyListener, Runnable {
 	}
 	
 	public void setHighlightManager(HighlightManager m) {
+		if (mgr != null) {
+			mgr.removeRepaintListener(repainter);
+		}
+
 		mgr = m;
+
+		if (mgr != null) {
+			mgr.addRepaintListener(repainter);
+		}
 	}
 	
 	public JTextPane getTextPane() {
@@ -103,12 +112,7 @@ public class BracketMatch implements MouseListener, KeyListener, Runnable {
 			return;
 		}
 		
-		String text = null;
-		try {
-			text = doc.getText(0, doc.getLength());
-		} catch (Exception e) {
-			ErrorMgr.show(e, "Error getting text for bracket match.");
-		}
+		CharSequence text = new DocumentText(doc);
 		
 		int caret = textPane.getCaretPosition();
 		
@@ -141,6 +145,11 @@ public class BracketMatch implements MouseListener, KeyListener, Runnable {
 	}
 
 	public void clear() {
+		if (mgr != null && mgr.paintsRuns()) {
+			mgr.setBracketMatch(-1, -1, null);
+			return;
+		}
+
 		try {
 			if (active != null) {
 				doc.setCharacterAttributes(
@@ -163,7 +172,7 @@ public class BracketMatch implements MouseListener, KeyListener, Runnable {
 		}
 	}
 	
-	private ArrayList<Pair> createList(String s, char c) {
+	private ArrayList<Pair> createList(CharSequence s, char c) {
 		char open, close;
 		int index = indexOf(starts, c);
 		
@@ -231,7 +240,14 @@ public class BracketMatch implements MouseListener, KeyListener, Runnable {
 			try {
 				active = p;
 
-				if (active != null) {
+				if (mgr != null && mgr.paintsRuns()) {
+					// The view paints the match over the highlighting.
+					mgr.setBracketMatch(
+						(p == null) ? -1 : p.open,
+						(p == null) ? -1 : p.close,
+						StyleConstants.getForeground(attr)
+					);
+				} else if (active != null) {
 					// Add
 					doc.setCharacterAttributes(
 						active.open,
@@ -262,26 +278,12 @@ public class BracketMatch implements MouseListener, KeyListener, Runnable {
 		paintBrackets(active);
 	}
 
-	public void mousePressed(MouseEvent me) {
-		SwingUtilities.invokeLater(this);
-	}
-
-	public void keyPressed(KeyEvent ke) {
-		int k = ke.getKeyCode();
+	public void editsMade(EditBatch batch) {
+		// Brackets are matched again once for everything typed or
+		// moved over in a turn, instead of after every edit.
 
-		if (	k == KeyEvent.VK_UP ||
-			k == KeyEvent.VK_DOWN ||
-			k == KeyEvent.VK_LEFT ||
-			k == KeyEvent.VK_RIGHT ||
-			k == KeyEvent.VK_PAGE_UP ||
-			k == KeyEvent.VK_PAGE_DOWN ||
-			k == KeyEvent.VK_KP_UP ||
-			k == KeyEvent.VK_KP_DOWN ||
-			k == KeyEvent.VK_KP_LEFT ||
-			k == KeyEvent.VK_KP_RIGHT ||
-			k == KeyEvent.VK_TAB)
-		{
-			SwingUtilities.invokeLater(this);
+		if (batch.caretMoved() || batch.hasEdits()) {
+			run();
 		}
 	}
 
@@ -289,11 +291,4 @@ public class BracketMatch implements MouseListener, KeyListener, Runnable {
 		clear();
 		highlight();
 	}
-
-	public void mouseReleased(MouseEvent me) {}
-	public void mouseClicked(MouseEvent me) {}
-	public void mouseExited(MouseEvent me) {}
-	public void mouseEntered(MouseEvent me) {}
-	public void keyReleased(KeyEvent ke) {}
-	public void keyTyped(KeyEvent ke) {}
 }
@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-08-30
-*	Modified: 2022-01-01
+*	Modified: 2026-10-18
 *
 *	Handles the reading and writing of the preferences
 *	file, and communicates that information to widgets
@@ -51,6 +51,12 @@ public class Defaults {
 	public static boolean IGNORE_CASE;
 	public static int TAB_WIDTH;
 	public static boolean HIGHLIGHT;
+	public static boolean LAZY_HIGHLIGHT;
+	public static boolean PAINT_HIGHLIGHT;
+	public static int HIGHLIGHT_MARGIN;
+	public static int PIECE_TABLE_SIZE;
+	public static int VIEWER_SIZE;
+	public static int UNDO_MEMORY;
 	public static final Platform PLATFORM = getPlatform();
 	public static boolean ACTIVE_LINE;
 	public static boolean SHOW_WIDTH;
@@ -184,6 +190,18 @@ public class Defaults {
 						IGNORE_CASE = Boolean.parseBoolean(data);
 					} else if (line.startsWith("Highlight:")) {
 						HIGHLIGHT = Boolean.parseBoolean(data);
+					} else if (line.startsWith("Lazy Highlight:")) {
+						LAZY_HIGHLIGHT = Boolean.parseBoolean(data);
+					} else if (line.startsWith("Paint Highlight:")) {
+						PAINT_HIGHLIGHT = Boolean.parseBoolean(data);
+					} else if (line.startsWith("Highlight Margin:")) {
+						HIGHLIGHT_MARGIN = Integer.parseInt(data);
+					} else if (line.startsWith("Piece Table Size:")) {
+						PIECE_TABLE_SIZE = Integer.parseInt(data);
+					} else if (line.startsWith("Viewer Size:")) {
+						VIEWER_SIZE = Integer.parseInt(data);
+					} else if (line.startsWith("Undo Memory:")) {
+						UNDO_MEMORY = Integer.parseInt(data);
 					} else if (line.startsWith("Tab Width:")) {
 						TAB_WIDTH = Integer.parseInt(data);
 					} else if (line.startsWith("Access Modifiers:")) {
@@ -293,6 +311,12 @@ public class Defaults {
 			writer.println("Tab Width: " + TAB_WIDTH + "\n");
 			
 			writer.println("Highlight: " + HIGHLIGHT);
+			writer.println("Lazy Highlight: " + LAZY_HIGHLIGHT);
+			writer.println("Paint Highlight: " + PAINT_HIGHLIGHT);
+			writer.println("Highlight Margin: " + HIGHLIGHT_MARGIN);
+			writer.println("Piece Table Size: " + PIECE_TABLE_SIZE);
+			writer.println("Viewer Size: " + VIEWER_SIZE);
+			writer.println("Undo Memory: " + UNDO_MEMORY);
 			writer.println("Active Line: " + ACTIVE_LINE + "\n");
 			
 			writer.println("Show Width: " + SHOW_WIDTH);
@@ -354,6 +378,12 @@ public class Defaults {
 		IGNORE_CASE = true;
 		TAB_WIDTH = 8;
 		HIGHLIGHT = true;
+		LAZY_HIGHLIGHT = true;
+		PAINT_HIGHLIGHT = true;
+		HIGHLIGHT_MARGIN = 100;
+		PIECE_TABLE_SIZE = 1;
+		VIEWER_SIZE = 64;
+		UNDO_MEMORY = 32;
 		ACTIVE_LINE = true;
 		SHOW_WIDTH = true;
 		WIDTH_INDEX = 80;
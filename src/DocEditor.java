@@ -1,9 +1,12 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-08-20
-*	Modified: 2022-01-01
+*	Modified: 2026-10-18
 *
 *	Contains the find manager and scrollbar, which also has the line numbers on the side.
+*	Files over the viewer size are shown read-only in a FileViewer instead, until the
+*	user opens them for editing. Each tab keeps its text in a piece table or a gap
+*	buffer, picked by the file's size unless the user reopens it with the other.
 */
 
 
@@ -13,129 +16,335 @@ import java.awt.event.KeyListener;
 
 import java.awt.Graphics;
 
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
 
+import javax.swing.text.GapContent;
+
 import java.io.File;
 import java.io.IOException;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
 
 @SuppressWarnings("serial")
 public class DocEditor extends JPanel implements ComponentListener {
 	private final int SCROLL_SPEED = 30;
 
-	private EditorPane editor = new EditorPane();
-	private JScrollPane scroll = new JScrollPane(editor);
-	private FindManager findMgr = new FindManager(this, editor, editor.getHighlightManager());
-	private LineNumbers lines = new LineNumbers(editor, scroll);
+	private EditorPane editor;
+	private JScrollPane scroll;
+	private FindManager findMgr;
+	private LineNumbers lines;
+	private boolean pieceTable;
+
+	// Set instead of the above while a large file is only being viewed.
+	private FileViewer viewer = null;
+	private LineFinder viewerLines;
 
 	public DocEditor(File file) throws Exception {
+		this(file, usePieceTable(file), shouldView(file));
+	}
+
+	public DocEditor(File file, boolean pieceTable) throws Exception {
+		// Opens file for editing in the content chosen for it,
+		// instead of the one that its size picks.
+		this(file, pieceTable, false);
+	}
+
+	private DocEditor(File file, boolean pieceTable, boolean view) throws Exception {
+		setLayout(null);
+
+		if (view) {
+			createViewer(new FileViewer(file));
+		} else {
+			createEditor(file, pieceTable);
+		}
+
+		addComponentListener(this);
+		add(scroll);
+	}
+
+	private static boolean shouldView(File file) {
+		// Files past the viewer size are too big to be worth reading
+		// into the editor unless the user asks for it.
+
+		return	file != null && Defaults.VIEWER_SIZE > 0 &&
+			file.length() >= Defaults.VIEWER_SIZE * 1024L * 1024L;
+	}
+
+	private void createViewer(FileViewer viewer) {
+		this.viewer = viewer;
+		viewerLines = new LineFinder(viewer, this);
+		scroll = new JScrollPane(viewer);
+
+		scroll.getVerticalScrollBar().setUnitIncrement(SCROLL_SPEED);
+		scroll.getHorizontalScrollBar().setUnitIncrement(SCROLL_SPEED);
+	}
+
+	private void createEditor(File file, boolean pieceTable) throws Exception {
+		// Large files are kept in a piece table, which edits in the
+		// same time wherever the edit is, instead of a gap buffer,
+		// which has to move everything between the edit and the last.
+
+		this.pieceTable = pieceTable;
+		editor = new EditorPane(pieceTable ? new PieceContent() : new GapContent());
+		scroll = new JScrollPane(editor);
+		findMgr = new FindManager(this, editor, editor.getHighlightManager());
+		lines = new LineNumbers(editor, scroll);
+
 		scroll.setRowHeaderView(lines);
 		scroll.getVerticalScrollBar().setUnitIncrement(SCROLL_SPEED);
 		scroll.getHorizontalScrollBar().setUnitIncrement(SCROLL_SPEED);
+		editor.getHighlightManager().setViewport(scroll.getViewport(),
+							editor.getTextPane());
 
 		if (file != null && !editor.open(file)) {
 			throw new IOException("File " + file + " could not be opened.");
-		} else {
-			lines.recalculateLines();
+		} else if (file == null) {
+			// A file's journal is started once it has been read in.
+			editor.startJournal();
 		}
-		
-		addComponentListener(this);
-		
-		setLayout(null);
+
+		lines.recalculateLines();
+	}
+
+	public void startEditing() {
+		// Swaps the viewer for the editor, which reads all of the
+		// file in, so this can take a while and a lot of memory.
+
+		if (viewer == null) {
+			return;
+		}
+
+		int option = JOptionPane.showConfirmDialog(this,
+			"The whole file will be read into memory to edit it,\n" +
+			"which may take a while. Open it for editing?",
+			"Edit File",
+			JOptionPane.OK_CANCEL_OPTION
+		);
+
+		if (option == JOptionPane.OK_OPTION) {
+			edit();
+		}
+	}
+
+	private void edit() {
+		// Swaps the viewer for the editor without asking. If the file
+		// can't be opened for editing, it is still viewed.
+
+		File file = viewer.getFile();
+
+		try {
+			remove(scroll);
+			remove(viewerLines);
+			removeComponentListener(viewerLines);
+
+			createEditor(file, usePieceTable(file));
+			viewer.close();
+			viewer = null;
+			viewerLines = null;
+		} catch (Exception e) {
+			// The editor couldn't open the file, which it has already
+			// said, so the viewer is put back.
+			removeAll();
+			editor = null;
+			findMgr = null;
+			lines = null;
+			createViewer(viewer);
+		}
+
 		add(scroll);
+		scroll.setBounds(0, 0, getWidth(), getHeight());
+		revalidate();
+		repaint();
+		requestFocus();
+	}
+
+	public boolean isViewing() {
+		return viewer != null;
 	}
 
-	public void save() {
-		editor.save();
+	public static boolean usePieceTable(File file) {
+		long size = (file == null) ? 0 : file.length();
+
+		return size >= Defaults.PIECE_TABLE_SIZE * 1024L * 1024L;
 	}
 
-	public void saveAs(File file) {
-		editor.saveAs(file);	
+	public boolean usesPieceTable() {
+		return viewer == null && pieceTable;
+	}
+
+	public Future<Boolean> save() {
+		// Starts saving the file, and returns the save, or null if it
+		// couldn't be started. The tab is marked saved once it is done.
+
+		// A file that is only being viewed is never changed.
+		if (viewer != null) {
+			return CompletableFuture.completedFuture(true);
+		}
+
+		return editor.save();
+	}
+
+	public Future<Boolean> saveAs(File file) {
+		if (viewer != null) {
+			JOptionPane.showMessageDialog(this,
+				"Open the file for editing to save it somewhere else.",
+				"Save Error",
+				JOptionPane.ERROR_MESSAGE
+			);
+
+			return null;
+		}
+
+		return editor.saveAs(file);
+	}
+
+	public void close() {
+		// Called when the tab is closed.
+
+		if (viewer == null) {
+			editor.close();
+		} else {
+			viewer.close();
+		}
+	}
+
+	public boolean recover(EditJournal.Recovery recovery) {
+		// Puts back unsaved edits to the file, opening it for editing
+		// first if it is only being viewed. Returns false if they
+		// couldn't be put back.
+
+		if (viewer != null) {
+			edit();
+		}
+
+		if (viewer != null) {
+			return false;
+		}
+
+		return editor.recover(recovery);
+	}
+
+	public void cacheTokens() {
+		if (viewer == null) {
+			editor.cacheTokens();
+		}
 	}
 
 	public boolean inUse() {
-		return editor.inUse();
+		return viewer != null || editor.inUse();
 	}
 
 	@Override
 	public void requestFocus() {
-		editor.requestFocus();
+		if (viewer != null) {
+			viewer.requestFocus();
+		} else {
+			editor.requestFocus();
+		}
 	}
 
 	@Override
 	public void addKeyListener(KeyListener kl) {
-		editor.addKeyListener(kl);
+		if (viewer != null) {
+			viewer.addKeyListener(kl);
+		} else {
+			editor.addKeyListener(kl);
+		}
 	}
 
 	public boolean hasFile() {
-		return editor.hasFile();
+		return viewer != null || editor.hasFile();
 	}
 
 	public boolean cut() {
-		boolean b = editor.cut();
-		lines.recalculateLines();
-		return b;
+		return viewer == null && editor.cut();
 	}
 
 	public boolean paste() {
-		boolean b = editor.paste();
-		lines.recalculateLines();
-		return b;
+		return viewer == null && editor.paste();
 	}
 
 	public boolean copy() {
-		return editor.copy();
+		return (viewer != null) ? viewer.copy() : editor.copy();
 	}
 
 	public boolean undo() {
-		boolean b = editor.undo();
-		lines.recalculateLines();
-		return b;
+		return viewer == null && editor.undo();
 	}
 
 	public boolean redo() {
-		boolean b = editor.redo();
-		lines.recalculateLines();
-		return b;
+		return viewer == null && editor.redo();
 	}
 
 	public String getSelectedText() {
-		return editor.getSelectedText();
+		return (viewer != null) ? viewer.getSelectedText() : editor.getSelectedText();
 	}
 
 	public String getText() {
-		return editor.getText();
+		// The text of a file being viewed is left in the file.
+		return (viewer != null) ? null : editor.getText();
 	}
 
 	public File getFile() {
-		return editor.getFile();
+		return (viewer != null) ? viewer.getFile() : editor.getFile();
 	}
 	
 	public void find() {
-		findMgr.find();
+		if (viewer != null) {
+			viewer.find();
+		} else {
+			findMgr.find();
+		}
 	}
 	
 	public void replace() {
-		findMgr.replace();
+		if (viewer != null) {
+			viewer.find();
+		} else {
+			findMgr.replace();
+		}
 	}
 	
 	public boolean containsText() {
-		return editor.containsText();
+		return (viewer != null) ? viewer.length() > 0 : editor.containsText();
 	}
 	
 	public void formatIndentation() {
-		editor.formatIndentation();
+		if (viewer == null) {
+			editor.formatIndentation();
+		}
 	}
 	
 	public void findLine() {
-		findMgr.findLine();
+		if (viewer != null) {
+			viewerLines.display();
+		} else {
+			findMgr.findLine();
+		}
 	}
 
 	public FindManager getFindManager() {
 		return findMgr;
 	}
+
+	public LineFinder getLineFinder() {
+		return (viewer != null) ? viewerLines : findMgr.getLineFinder();
+	}
+
+	public int getCurrentLine() {
+		// The line the caret is on, where the first line is 0.
+
+		if (viewer != null) {
+			return viewer.getCurrentLine();
+		}
+
+		return editor.getActiveLine().getCurrentLine();
+	}
 	
 	@Override
 	public boolean isOptimizedDrawingEnabled() {
@@ -152,6 +361,10 @@ public class DocEditor extends JPanel implements ComponentListener {
 	}
 	
 	public void recalculateLines() {
+		if (viewer != null) {
+			return;
+		}
+
 		lines.recalculateLines();
 		
 		// This is required because the scrollpane only revalidates
@@ -162,12 +375,18 @@ public class DocEditor extends JPanel implements ComponentListener {
 	}
 	
 	public void updateOptions() {
+		if (viewer != null) {
+			viewer.updateOptions();
+			return;
+		}
+
 		editor.updateOptions();
 		findMgr.updateOptions();
 		lines.updateOptions();
 	}
 	
 	public EditorPane getEditor() {
+		// Null while the file is only being viewed.
 		return editor;
 	}
 
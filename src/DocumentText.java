@@ -0,0 +1,122 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	The text of a document, or part of one, as a CharSequence that reads
+*	straight out of the document's content a window at a time instead of
+*	copying the text out into a String. A view is only good until the
+*	document next changes, so one is made for every pass over the text;
+*	making one copies nothing.
+*/
+
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+
+public class DocumentText implements CharSequence {
+	// How far back a window starts when reading backwards, so that
+	// going back through the text doesn't read it one char at a time.
+	private static final int BACK_SIZE = 1024;
+
+	private Document doc;
+	private int offset, length;
+
+	// The window of the content that was last read, which is
+	// from windowStart to windowEnd in the document.
+	private Segment window = new Segment();
+	private int windowStart = 0, windowEnd = 0;
+
+	public DocumentText(Document doc) {
+		this(doc, 0, doc.getLength());
+	}
+
+	public DocumentText(Document doc, int offset, int length) {
+		this.doc = doc;
+		this.offset = offset;
+		this.length = length;
+
+		window.setPartialReturn(true);
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index " + index +
+							" out of " + length);
+		}
+
+		int i = offset + index;
+
+		if (i < windowStart || i >= windowEnd) {
+			read(i);
+		}
+
+		return window.array[window.offset + i - windowStart];
+	}
+
+	private void read(int i) {
+		// Reads the window holding i. The content hands back as much as
+		// it can without copying, which can end before i when starting
+		// behind it, so the windows are read on until one holds it.
+
+		int start = (i < windowStart) ? Math.max(offset, i - BACK_SIZE) : i;
+		int end = offset + length;
+
+		try {
+			do {
+				doc.getText(start, end - start, window);
+				windowStart = start;
+				windowEnd = start + window.count;
+				start = windowEnd;
+			} while (windowEnd <= i);
+		} catch (BadLocationException e) {
+			throw new IndexOutOfBoundsException(e.getMessage());
+		}
+	}
+
+	public void getChars(int start, int end, char[] dest, int destStart) {
+		// Copies the text from start to end into dest, like
+		// String.getChars(), for text that has to be kept.
+
+		int i = offset + start;
+
+		while (i < offset + end) {
+			if (i < windowStart || i >= windowEnd) {
+				read(i);
+			}
+
+			int count = Math.min(windowEnd, offset + end) - i;
+			System.arraycopy(window.array, window.offset + i - windowStart,
+						dest, destStart, count);
+
+			destStart += count;
+			i += count;
+		}
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("Range " + start + " to " +
+							end + " out of " + length);
+		}
+
+		return new DocumentText(doc, offset + start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		// Copies the text out, so it is only for when a String is needed.
+
+		try {
+			return doc.getText(offset, length);
+		} catch (BadLocationException e) {
+			throw new IndexOutOfBoundsException(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Everything that happened to a document and its caret during one turn
+*	of the event loop, as handed out by its EditBus.
+*/
+
+
+public class EditBatch {
+	private Range damage;
+	private int lengthChange, oldCaret, newCaret;
+
+	public EditBatch(Range damage, int lengthChange, int oldCaret, int newCaret) {
+		this.damage = damage;
+		this.lengthChange = lengthChange;
+		this.oldCaret = oldCaret;
+		this.newCaret = newCaret;
+	}
+
+	public boolean hasEdits() {
+		return damage != null;
+	}
+
+	public Range getDamage() {
+		// Returns the text that was inserted or changed, in where it is
+		// now, or null if there were no edits. It is empty where text
+		// was only removed. The text before it is the same as it was,
+		// and so is the text after it, moved by getLengthChange().
+
+		return damage;
+	}
+
+	public int getLengthChange() {
+		return lengthChange;
+	}
+
+	public boolean caretMoved() {
+		return oldCaret != newCaret;
+	}
+
+	public int getOldCaret() {
+		return oldCaret;
+	}
+
+	public int getNewCaret() {
+		return newCaret;
+	}
+}
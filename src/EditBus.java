@@ -0,0 +1,155 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Gathers the edits made to a document, and the moves of the caret of
+*	the text pane showing it, into one EditBatch for every turn of the
+*	event loop. Everything that follows the text or the caret listens
+*	here, instead of each one listening to keys and the mouse and then
+*	going back through the text on its own.
+*/
+
+
+import java.util.ArrayList;
+
+import javax.swing.SwingUtilities;
+
+import javax.swing.event.CaretEvent;
+import javax.swing.event.CaretListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import javax.swing.text.JTextComponent;
+
+
+public class EditBus implements DocumentListener, CaretListener, Runnable {
+	private ArrayList<EditListener> listeners = new ArrayList<EditListener>();
+
+	// The text damaged so far this turn, kept where it is in the text
+	// as it is now, or -1 if nothing has been edited.
+	private int damageStart = -1, damageEnd = -1;
+	private int lengthChange = 0;
+
+	private int caret, oldCaret;
+	private boolean posted = false;
+
+	private EditBus(JTextComponent text) {
+		caret = text.getCaretPosition();
+		oldCaret = caret;
+
+		text.getDocument().addDocumentListener(this);
+		text.addCaretListener(this);
+		text.getDocument().putProperty(EditBus.class, this);
+	}
+
+	public static EditBus get(JTextComponent text) {
+		// Returns the bus of the document text shows,
+		// making it the first time.
+
+		Object bus = text.getDocument().getProperty(EditBus.class);
+
+		if (bus instanceof EditBus) {
+			return (EditBus) bus;
+		}
+
+		return new EditBus(text);
+	}
+
+	public void addEditListener(EditListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeEditListener(EditListener listener) {
+		listeners.remove(listener);
+	}
+
+	public boolean hasPendingEdits() {
+		// Returns true if there are edits that haven't been handed out.
+
+		return damageStart != -1;
+	}
+
+	public void insertUpdate(DocumentEvent e) {
+		int offset = e.getOffset(), length = e.getLength();
+
+		if (damageStart == -1) {
+			damageStart = offset;
+			damageEnd = offset + length;
+		} else {
+			if (damageEnd >= offset) {
+				damageEnd += length;
+			}
+
+			damageStart = Math.min(damageStart, offset);
+			damageEnd = Math.max(damageEnd, offset + length);
+		}
+
+		lengthChange += length;
+		post();
+	}
+
+	public void removeUpdate(DocumentEvent e) {
+		int offset = e.getOffset(), length = e.getLength();
+
+		if (damageStart == -1) {
+			damageStart = offset;
+			damageEnd = offset;
+		} else {
+			damageStart = Math.min(removed(damageStart, offset, length), offset);
+			damageEnd = Math.max(removed(damageEnd, offset, length), offset);
+		}
+
+		lengthChange -= length;
+		post();
+	}
+
+	private static int removed(int i, int offset, int length) {
+		// Returns where i is after the text from offset
+		// to offset + length is removed.
+
+		if (i <= offset) {
+			return i;
+		}
+
+		return Math.max(offset, i - length);
+	}
+
+	public void changedUpdate(DocumentEvent e) {
+		// Restyling doesn't change the text.
+	}
+
+	public void caretUpdate(CaretEvent e) {
+		caret = e.getDot();
+		post();
+	}
+
+	private void post() {
+		// The batch is handed out once everything already
+		// waiting on the event loop has been done.
+
+		if (!posted) {
+			posted = true;
+			SwingUtilities.invokeLater(this);
+		}
+	}
+
+	public void run() {
+		Range damage = null;
+		if (damageStart != -1) {
+			damage = new Range(damageStart, damageEnd - damageStart);
+		}
+
+		EditBatch batch = new EditBatch(damage, lengthChange, oldCaret, caret);
+
+		damageStart = -1;
+		damageEnd = -1;
+		lengthChange = 0;
+		oldCaret = caret;
+		posted = false;
+
+		for (int i = 0; i < listeners.size(); i++) {
+			listeners.get(i).editsMade(batch);
+		}
+	}
+}
@@ -0,0 +1,473 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Keeps a journal of every edit made to a tab's text since it was last
+*	saved, so that the edits can be put back if the editor is killed or
+*	crashes before the tab is saved. Each tab writes to its own file next
+*	to the user data file, which only grows by the edits that are made,
+*	instead of saving whole files every so often.
+*
+*	Edits are recorded as the document is changed, which only adds them
+*	to a buffer. A single thread writes out every journal's buffer and
+*	forces it to the disk a few times a second, so many edits share one
+*	write. A journal starts with the size and modified time of the file
+*	the edits were made to, and the edits are only put back on top of
+*	that same file.
+*/
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+
+public class EditJournal implements DocumentListener {
+	private static final File dir = new File(Defaults.working + "/brocessing_journal");
+
+	private static final int	MAGIC = 0x50454a4e,
+					VERSION = 1;
+
+	private static final byte	INSERT = 1,
+					REMOVE = 2;
+
+	// How often the journals are written out, in milliseconds.
+	private static final int FLUSH_INTERVAL = 200;
+
+	private static final ArrayList<EditJournal> open = new ArrayList<EditJournal>();
+	private static Thread flusher = null;
+	private static int created = 0;
+
+	private File journal;
+	private FileChannel channel;
+	private Document doc;
+
+	// Edits not written out yet, and the header to start the file over
+	// with once a save is done. Both are guarded by the journal.
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private DataOutputStream out = new DataOutputStream(buffer);
+	private byte[] restart = null;
+	private boolean closed = false;
+
+	// Edits made since the text being saved was taken, which are all
+	// the journal needs to keep once that save is done.
+	private ByteArrayOutputStream sinceSave = null;
+	private DataOutputStream sinceSaveOut = null;
+
+	private EditJournal(File journal, FileChannel channel) {
+		this.journal = journal;
+		this.channel = channel;
+	}
+
+	public static EditJournal start(File file, Document doc) {
+		// Starts a journal for edits made to doc from now on, whose text
+		// is the same as file, or empty if file is null. Returns null if
+		// the journal can't be made, since the editor works without it.
+
+		try {
+			dir.mkdirs();
+
+			File journal;
+			synchronized (open) {
+				journal = new File(dir, System.currentTimeMillis() + "-" +
+							(created++) + ".jnl");
+			}
+
+			FileChannel channel = FileChannel.open(journal.toPath(),
+						StandardOpenOption.CREATE_NEW,
+						StandardOpenOption.READ,
+						StandardOpenOption.WRITE);
+
+			// The lock is held until the channel is closed, so another
+			// copy of the editor doesn't recover a journal in use.
+			channel.tryLock();
+
+			EditJournal j = new EditJournal(journal, channel);
+			j.write(ByteBuffer.wrap(header(file)));
+
+			j.doc = doc;
+			doc.addDocumentListener(j);
+
+			synchronized (open) {
+				open.add(j);
+				startFlusher();
+			}
+
+			return j;
+		} catch (Exception e) {
+			// Edits just aren't journaled.
+			return null;
+		}
+	}
+
+	private static byte[] header(File file) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(bytes);
+
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeUTF((file == null) ? "" : file.getAbsolutePath());
+		header.writeLong((file == null) ? 0 : file.length());
+		header.writeLong((file == null) ? 0 : file.lastModified());
+
+		return bytes.toByteArray();
+	}
+
+	public void insertUpdate(DocumentEvent e) {
+		try {
+			String s = doc.getText(e.getOffset(), e.getLength());
+
+			synchronized (this) {
+				record(out, INSERT, e.getOffset(), s);
+				if (sinceSaveOut != null) {
+					record(sinceSaveOut, INSERT, e.getOffset(), s);
+				}
+			}
+		} catch (Exception ex) {
+			// Can't happen while the document is being changed.
+		}
+	}
+
+	public void removeUpdate(DocumentEvent e) {
+		try {
+			synchronized (this) {
+				record(out, REMOVE, e.getOffset(), e.getLength());
+				if (sinceSaveOut != null) {
+					record(sinceSaveOut, REMOVE, e.getOffset(), e.getLength());
+				}
+			}
+		} catch (IOException ex) {
+			// Writing to memory doesn't fail.
+		}
+	}
+
+	public void changedUpdate(DocumentEvent e) {}
+
+	private static void record(DataOutputStream out, byte type, int offset,
+						String text) throws IOException {
+		out.writeByte(type);
+		out.writeInt(offset);
+		out.writeInt(text.length());
+		out.writeChars(text);
+	}
+
+	private static void record(DataOutputStream out, byte type, int offset,
+						int length) throws IOException {
+		out.writeByte(type);
+		out.writeInt(offset);
+		out.writeInt(length);
+	}
+
+	public synchronized void saveStarted() {
+		// The text being saved has just been taken.
+
+		sinceSave = new ByteArrayOutputStream();
+		sinceSaveOut = new DataOutputStream(sinceSave);
+	}
+
+	public synchronized void saveDone(File file, boolean saved) {
+		// Once file has been saved, the journal starts over from it,
+		// keeping only the edits made since its text was taken.
+
+		if (saved && sinceSave != null) {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				bytes.write(header(file));
+				sinceSave.writeTo(bytes);
+
+				restart = bytes.toByteArray();
+				buffer.reset();
+			} catch (IOException e) {
+				// Only happens writing to memory, which doesn't fail.
+			}
+		}
+
+		sinceSave = null;
+		sinceSaveOut = null;
+	}
+
+	public void close() {
+		close(false);
+	}
+
+	public void close(boolean keep) {
+		// Stops the journal when the tab is closed, and deletes it unless
+		// keep is true, when its edits were never saved and it is left
+		// to be recovered the next time the editor starts. This is done
+		// straight away, since the program may be about to end.
+
+		doc.removeDocumentListener(this);
+
+		if (keep) {
+			flush();
+		}
+
+		synchronized (this) {
+			closed = true;
+		}
+
+		synchronized (open) {
+			open.remove(this);
+		}
+
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// It is deleted or recovered either way.
+		}
+
+		if (!keep) {
+			journal.delete();
+		}
+	}
+
+	private static void startFlusher() {
+		if (flusher != null) {
+			return;
+		}
+
+		flusher = new Thread(new Runnable() {
+			public void run() {
+				while (true) {
+					try {
+						Thread.sleep(FLUSH_INTERVAL);
+					} catch (InterruptedException e) {
+						return;
+					}
+
+					ArrayList<EditJournal> journals;
+					synchronized (open) {
+						journals = new ArrayList<EditJournal>(open);
+					}
+
+					for (int i = 0; i < journals.size(); i++) {
+						journals.get(i).flush();
+					}
+				}
+			}
+		}, "Edit Journal");
+
+		flusher.setDaemon(true);
+		flusher.setPriority(Thread.MIN_PRIORITY);
+		flusher.start();
+	}
+
+	private void flush() {
+		// Writes out what was recorded since the last flush, on the
+		// flusher's thread, and forces it to the disk.
+
+		byte[] edits, header;
+
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+
+			edits = (buffer.size() > 0) ? buffer.toByteArray() : null;
+			header = restart;
+
+			buffer.reset();
+			restart = null;
+		}
+
+		try {
+			if (header != null) {
+				channel.truncate(0);
+				channel.position(0);
+				write(ByteBuffer.wrap(header));
+			}
+
+			if (edits != null) {
+				write(ByteBuffer.wrap(edits));
+			}
+
+			if (header != null || edits != null) {
+				channel.force(false);
+			}
+		} catch (IOException e) {
+			// A journal that can't be written just stops being kept.
+			synchronized (open) {
+				open.remove(this);
+			}
+		}
+	}
+
+	private void write(ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+	}
+
+	public static ArrayList<Recovery> findUnsaved() {
+		// Reads the journals left behind by an editor that didn't
+		// close, which have edits in them. Journals with no edits, or
+		// whose file was changed since, are deleted.
+
+		ArrayList<Recovery> found = new ArrayList<Recovery>();
+		File[] files = dir.listFiles();
+
+		if (files == null) {
+			return found;
+		}
+
+		for (int i = 0; i < files.length; i++) {
+			if (!files[i].getName().endsWith(".jnl")) {
+				continue;
+			}
+
+			Recovery recovery = read(files[i]);
+
+			if (recovery == null) {
+				continue;
+			} else if (recovery.edits.size() == 0 || !recovery.matchesFile()) {
+				files[i].delete();
+			} else {
+				found.add(recovery);
+			}
+		}
+
+		return found;
+	}
+
+	private static Recovery read(File journal) {
+		// Returns null for a journal that is still in use.
+
+		try (FileChannel channel = FileChannel.open(journal.toPath(),
+						StandardOpenOption.READ,
+						StandardOpenOption.WRITE)) {
+			FileLock lock = channel.tryLock();
+			if (lock == null) {
+				return null;
+			}
+			lock.release();
+		} catch (Exception e) {
+			return null;
+		}
+
+		Recovery recovery = new Recovery(journal);
+
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+					Files.readAllBytes(journal.toPath())))) {
+
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return recovery;
+			}
+
+			String path = in.readUTF();
+			recovery.file = path.isEmpty() ? null : new File(path);
+			recovery.size = in.readLong();
+			recovery.modified = in.readLong();
+
+			// The last edit may have been cut off part way through
+			// being written, in which case it is left out.
+			while (true) {
+				Edit edit = new Edit();
+				edit.type = in.readByte();
+				edit.offset = in.readInt();
+				int length = in.readInt();
+
+				if (edit.type == INSERT) {
+					char[] chars = new char[length];
+					for (int i = 0; i < length; i++) {
+						chars[i] = in.readChar();
+					}
+					edit.text = new String(chars);
+				} else if (edit.type == REMOVE) {
+					edit.length = length;
+				} else {
+					break;
+				}
+
+				recovery.edits.add(edit);
+			}
+		} catch (EOFException e) {
+			// The end of the journal.
+		} catch (Exception e) {
+			// Whatever was read is still put back.
+		}
+
+		return recovery;
+	}
+
+	private static class Edit {
+		private byte type;
+		private int offset, length;
+		private String text;
+	}
+
+	public static class Recovery {
+		// The edits from one journal, to be put back on top of file,
+		// or on top of an empty tab if file is null.
+
+		private File journal, file;
+		private long size, modified;
+		private ArrayList<Edit> edits = new ArrayList<Edit>();
+
+		private Recovery(File journal) {
+			this.journal = journal;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		private boolean matchesFile() {
+			if (file == null) {
+				return true;
+			}
+
+			return	file.exists() && file.length() == size &&
+				file.lastModified() == modified;
+		}
+
+		public boolean apply(Document doc) {
+			// Makes the edits to doc, which should hold what file does,
+			// stopping at any that don't fit. The journal is deleted
+			// once they have all been made, since doc's own journal
+			// records them again, and is otherwise kept.
+
+			try {
+				for (int i = 0; i < edits.size(); i++) {
+					Edit edit = edits.get(i);
+
+					if (edit.type == INSERT) {
+						doc.insertString(edit.offset, edit.text, null);
+					} else {
+						doc.remove(edit.offset, edit.length);
+					}
+				}
+			} catch (BadLocationException e) {
+				// The rest of the edits can't be put back.
+				return false;
+			}
+
+			discard();
+			return true;
+		}
+
+		public void discard() {
+			journal.delete();
+		}
+	}
+}
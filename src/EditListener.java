@@ -0,0 +1,13 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Listens to an EditBus for the edits and caret moves made to its
+*	document, told about once a turn of the event loop.
+*/
+
+
+public interface EditListener {
+	public void editsMade(EditBatch batch);
+}
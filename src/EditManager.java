@@ -1,13 +1,29 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-08-30
-*	Modfied: 2021-12-24
+*	Modfied: 2026-10-18
 *
 *	Handles the undo and redo for a document.
+*
+*	The history is a ring of edits, newest first, so recording an edit
+*	never moves the rest of them. Typing and deleting is added onto the
+*	newest edit through builders.
+*
+*	Once the history uses more than Defaults.UNDO_MEMORY, the oldest edits
+*	are moved out to a file, which is used as a stack: each edit is written
+*	after the ones moved out before it, followed by its length, and they are
+*	read back from the end when they are undone. The file is deleted when
+*	the tab is closed.
 */
 
 
-import java.util.ArrayList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 
 import javax.swing.JTextPane;
 
@@ -20,11 +36,18 @@ public class EditManager {
 		ADD,
 		REMOVE,
 		REPLACE,
-		REPLACE_ALL
+		REPLACE_ALL,
+		DIFF
 	}
 
+	// Roughly what an edit takes up apart from its text, in bytes.
+	private static final int EDIT_SIZE = 96, STRING_SIZE = 40;
+
 	private class Edit {
-		private String data, datb;
+		// Text added to the end of data, and text put before it, which
+		// is kept backwards so it is also only ever added to the end.
+		private StringBuilder data = new StringBuilder(), before = null;
+		private String datb;
 		private int offset, caretOverride;
 		private Action action;
 		
@@ -32,18 +55,120 @@ public class EditManager {
 		private int[] offsets;
 		private String[] olds;
 
+		// Only used for diffs.
+		private TextDiff diff;
+
 		private Edit() {
 			action = Action.NONE;
 			caretOverride = -1;
 		}
+
+		private void prepend(String string) {
+			if (before == null) {
+				before = new StringBuilder();
+			}
+
+			for (int i = string.length() - 1; i >= 0; i--) {
+				before.append(string.charAt(i));
+			}
+		}
+
+		private String getData() {
+			// Puts the text put before data back in front of it.
+
+			if (before != null) {
+				StringBuilder joined = new StringBuilder(
+						before.length() + data.length());
+
+				for (int i = before.length() - 1; i >= 0; i--) {
+					joined.append(before.charAt(i));
+				}
+
+				data = joined.append(data);
+				before = null;
+			}
+
+			return data.toString();
+		}
+
+		private long getMemory() {
+			long memory = EDIT_SIZE + 2L * data.length();
+
+			if (before != null) {
+				memory += 2L * before.length();
+			}
+			if (datb != null) {
+				memory += STRING_SIZE + 2L * datb.length();
+			}
+			if (diff != null) {
+				memory += diff.getMemory();
+			}
+			if (offsets != null) {
+				memory += 4L * offsets.length;
+				for (int i = 0; i < olds.length; i++) {
+					memory += STRING_SIZE + 2L * olds[i].length();
+				}
+			}
+
+			return memory;
+		}
+		
+		private void write(DataOutputStream out) throws IOException {
+			out.writeByte(action.ordinal());
+			out.writeInt(offset);
+			out.writeInt(caretOverride);
+			writeString(out, getData());
+			writeString(out, datb);
+
+			if (action == Action.REPLACE_ALL) {
+				out.writeInt(offsets.length);
+				for (int i = 0; i < offsets.length; i++) {
+					out.writeInt(offsets[i]);
+					writeString(out, olds[i]);
+				}
+			} else if (action == Action.DIFF) {
+				diff.write(out);
+			}
+		}
+
+		private void read(DataInputStream in) throws IOException {
+			action = Action.values()[in.readByte()];
+			offset = in.readInt();
+			caretOverride = in.readInt();
+			data.append(readString(in));
+			datb = readString(in);
+
+			if (action == Action.REPLACE_ALL) {
+				offsets = new int[in.readInt()];
+				olds = new String[offsets.length];
+				for (int i = 0; i < offsets.length; i++) {
+					offsets[i] = in.readInt();
+					olds[i] = readString(in);
+				}
+			} else if (action == Action.DIFF) {
+				diff = new TextDiff(in);
+			}
+		}
 		
 		@Override
 		public String toString() {
-			return action + " at " + offset + " data: '" + data + "' datb: '" + datb + "'";
+			return action + " at " + offset + " data: '" + getData() + "' datb: '" + datb + "'";
 		}
 	}
 
-	private ArrayList<Edit> list = new ArrayList<Edit>();
+	// history[newest] is the newest edit, and the count edits before
+	// it, wrapping around, are older ones.
+	private Edit[] history = new Edit[16];
+	private int newest = 0, count = 0;
+	private long memory = 0;
+
+	// The file older edits are moved out to, where it ends, and how many
+	// edits are in it.
+	private RandomAccessFile spill = null;
+	private File spillFile = null;
+	private long spillEnd = 0;
+	private int spilled = 0;
+
 	private JTextPane text;
 	private StyledDocument doc;
 	private int index;
@@ -55,53 +180,107 @@ public class EditManager {
 		
 		this.highlightMgr = highlightMgr;
 
-		list.add(new Edit());
+		push();
+		index = 0;
+	}
+
+	private Edit get(int i) {
+		// The i'th newest edit.
+
+		return history[(newest - i) & (history.length - 1)];
+	}
+
+	public long getMemoryUsed() {
+		// Roughly how many bytes of the undo history are in memory.
+
+		return memory;
+	}
+
+	public long getDiskUsed() {
+		// How many bytes of the undo history have been moved to disk.
+
+		return spillEnd;
+	}
+
+	public void close() {
+		// Deletes the edits moved out to disk, when the tab is closed.
+
+		if (spill != null) {
+			try {
+				spill.close();
+			} catch (IOException e) {
+				// It is deleted either way.
+			}
+
+			spillFile.delete();
+			spill = null;
+		}
+
+		spillEnd = 0;
+		spilled = 0;
 	}
 
 	public boolean undo() {
-		if (index < list.size()) {
+		if (index == count && spilled > 0) {
+			readBack();
+		}
+
+		if (index < count) {
 			try {
-				Edit e = list.get(index);
+				Edit e = get(index);
+				String data = e.getData();
 
 				if (e.action == Action.ADD) {
-					doc.remove(e.offset, e.data.length());
+					doc.remove(e.offset, data.length());
 
-					highlightMgr.recalculate();
-					highlightMgr.repaint(new Range(e.offset, 0));
+					highlightMgr.schedule(new Range(e.offset, 0));
 					
 					text.setCaretPosition(e.offset);
 				} else if (e.action == Action.REMOVE) {
-					doc.insertString(e.offset, e.data, null);
+					doc.insertString(e.offset, data, null);
 
-					highlightMgr.recalculate();
-					highlightMgr.repaint(new Range(e.offset, e.data.length()));
+					highlightMgr.schedule(new Range(e.offset, data.length()));
 					
-					text.setCaretPosition(e.offset + e.data.length());
+					text.setCaretPosition(e.offset + data.length());
 				} else if (e.action == Action.REPLACE) {
-					doc.remove(e.offset, e.data.length());
+					doc.remove(e.offset, data.length());
 					doc.insertString(e.offset, e.datb, null);
 					
-					highlightMgr.recalculate();
-					highlightMgr.repaint(new Range(e.offset, e.datb.length()));
+					highlightMgr.schedule(new Range(e.offset, e.datb.length()));
 					
 					text.setCaretPosition(e.offset + e.datb.length());
 				} else if (e.action == Action.REPLACE_ALL) {
+					// The offsets are where the text was before it was
+					// replaced, so they are moved to where it is now.
 					int initialCaret = text.getCaretPosition();
 					int offset = 0;
-					
+
+					int[] offsets = new int[e.offsets.length];
+					int[] lengths = new int[e.offsets.length];
+					int shift = 0;
+
 					for (int i = 0; i < e.offsets.length; i++) {
-						doc.remove(e.offsets[i], e.data.length());
-						doc.insertString(e.offsets[i], e.olds[i], null);
+						offsets[i] = e.offsets[i] + shift;
+						lengths[i] = data.length();
+						shift += data.length() - e.olds[i].length();
 						
 						if (e.offsets[i] < initialCaret) {
-							offset += (e.olds[i].length() - e.data.length());
+							offset += (e.olds[i].length() - data.length());
 						}
 					}
 
-					highlightMgr.recalculate();
-					highlightMgr.repaint();
+					RangeList changed = ((SyntaxDocument) doc).replaceAll(offsets,
+								lengths, e.olds);
+					highlightMgr.schedule(changed);
 					
 					text.setCaretPosition(initialCaret + offset);
+				} else if (e.action == Action.DIFF) {
+					Range changed = e.diff.getChanged(false);
+					e.diff.revert(doc);
+
+					highlightMgr.schedule(changed);
+
+					text.setCaretPosition(changed.getOffset());
 				}
 
 				index++;
@@ -115,59 +294,71 @@ public class EditManager {
 	}
 
 	public boolean redo() {
-		if (index > 0 && list.get(index - 1).action != Action.NONE) {
+		if (index > 0 && get(index - 1).action != Action.NONE) {
 			try {
 				index--;
 
-				Edit e = list.get(index);
+				Edit e = get(index);
+				String data = e.getData();
 				if (e.action == Action.ADD) {
-					doc.insertString(e.offset, e.data, null);
-					highlightMgr.recalculate();
-					highlightMgr.repaint(new Range(e.offset, e.data.length()));
+					doc.insertString(e.offset, data, null);
+					highlightMgr.schedule(new Range(e.offset, data.length()));
 					
 					if (e.caretOverride != -1) {
 						text.setCaretPosition(e.caretOverride);
 					} else {
-						text.setCaretPosition(e.offset + e.data.length());
+						text.setCaretPosition(e.offset + data.length());
 					}
 				} else if (e.action == Action.REMOVE) {
-					doc.remove(e.offset, e.data.length());
-					highlightMgr.recalculate();
-					highlightMgr.repaint(new Range(e.offset, 0));
+					doc.remove(e.offset, data.length());
+					highlightMgr.schedule(new Range(e.offset, 0));
 					
 					text.setCaretPosition(e.offset);
 				} else if (e.action == Action.REPLACE) {
 					doc.remove(e.offset, e.datb.length());
-					doc.insertString(e.offset, e.data, null);
+					doc.insertString(e.offset, data, null);
 					
-					highlightMgr.recalculate();
-					highlightMgr.repaint(new Range(e.offset, e.data.length()));
+					highlightMgr.schedule(new Range(e.offset, data.length()));
 					
 					if (e.caretOverride != -1) {
 						text.setCaretPosition(e.caretOverride);
 					} else {
-						text.setCaretPosition(e.offset + e.data.length());
+						text.setCaretPosition(e.offset + data.length());
 					}
 				} else if (e.action == Action.REPLACE_ALL) {
-					// This is done backwards so all the indexes line
-					// up properly, even after text has been changed.
-					
+					// The offsets are already where the text is now,
+					// since it is back to how it was before.
 					int initialCaret = text.getCaretPosition();
 					int offset = 0;
+
+					int[] lengths = new int[e.offsets.length];
+					String[] datas = new String[e.offsets.length];
 					
-					for (int i = e.offsets.length - 1; i >= 0; i--) {
-						doc.remove(e.offsets[i], e.olds[i].length());
-						doc.insertString(e.offsets[i], e.data, null);
+					for (int i = 0; i < e.offsets.length; i++) {
+						lengths[i] = e.olds[i].length();
+						datas[i] = data;
 						
 						if (e.offsets[i] < initialCaret) {
-							offset += (e.data.length() - e.olds[i].length());
+							offset += (data.length() - e.olds[i].length());
 						}
 					}
-					
-					highlightMgr.recalculate();
-					highlightMgr.repaint();
+
+					RangeList changed = ((SyntaxDocument) doc).replaceAll(e.offsets,
+								lengths, datas);
+					highlightMgr.schedule(changed);
 					
 					text.setCaretPosition(initialCaret + offset);
+				} else if (e.action == Action.DIFF) {
+					Range changed = e.diff.getChanged(true);
+					e.diff.apply(doc);
+
+					highlightMgr.schedule(changed);
+
+					if (e.caretOverride != -1) {
+						text.setCaretPosition(e.caretOverride);
+					} else {
+						text.setCaretPosition(changed.getOffset() + changed.getLength());
+					}
 				}
 				
 				return true;
@@ -186,48 +377,53 @@ public class EditManager {
 	public void add(String string, int offset, int caret) {
 		pop();
 
-		if (!(list.get(0).action == Action.ADD || list.get(0).action == Action.REPLACE)) {
+		if (!(get(0).action == Action.ADD || get(0).action == Action.REPLACE)) {
 			crack();
 		}
 
-		if (list.get(0).action == Action.NONE) {
-			list.get(0).action = Action.ADD;
-			list.get(0).data = string;
-			list.get(0).offset = offset;
-			list.get(0).caretOverride = caret;
-		} else {
-			list.get(0).data += string;
-			
-			if (caret != -1) {
-				list.get(0).caretOverride = caret;
-			}
+		Edit e = get(0);
+		memory -= e.getMemory();
+
+		if (e.action == Action.NONE) {
+			e.action = Action.ADD;
+			e.offset = offset;
+			e.caretOverride = caret;
+		} else if (caret != -1) {
+			e.caretOverride = caret;
 		}
+		e.data.append(string);
+
+		memory += e.getMemory();
 		index = 0;
+		trim();
 	}
 
 	public void remove(String string, int offset, boolean insertBefore) {
 		pop();
 
-		if (list.get(0).action != Action.REMOVE) {
+		if (get(0).action != Action.REMOVE) {
 			crack();
 		}
 
-		if (list.get(0).action == Action.NONE) {
-			list.get(0).action = Action.REMOVE;
-			list.get(0).data = string;
+		Edit e = get(0);
+		memory -= e.getMemory();
+
+		if (e.action == Action.NONE) {
+			e.action = Action.REMOVE;
+			e.data.append(string);
+		} else if (insertBefore) {
+			e.prepend(string);
 		} else {
-			if (insertBefore) {
-				list.get(0).data = string + list.get(0).data;
-			} else {
-				list.get(0).data += string;
-			}
+			e.data.append(string);
 		}
 
 		if (offset != -1) {
-			list.get(0).offset = offset;
+			e.offset = offset;
 		}
 
+		memory += e.getMemory();
 		index = 0;
+		trim();
 	}
 
 	public void replace(String old, String replace, int offset) {
@@ -237,39 +433,73 @@ public class EditManager {
 	public void replace(String old, String replace, int offset, int caretOverride) {
 		pop();
 		crack();
+
+		Edit e = get(0);
+		memory -= e.getMemory();
 		
-		list.get(0).action = Action.REPLACE;
-		list.get(0).offset = offset;
-		list.get(0).datb = old;
-		list.get(0).data = replace;
-		list.get(0).caretOverride = caretOverride;
-		
+		e.action = Action.REPLACE;
+		e.offset = offset;
+		e.datb = old;
+		e.data.append(replace);
+		e.caretOverride = caretOverride;
+
+		memory += e.getMemory();
 		index = 0;
+		trim();
+	}
+	
+	// Records a change to the whole text as only the parts that changed,
+	// which the caller has already applied.
+	public void replace(TextDiff diff, int caretOverride) {
+		pop();
+		crack();
+
+		Edit e = get(0);
+		memory -= e.getMemory();
+
+		e.action = Action.DIFF;
+		e.diff = diff;
+		e.caretOverride = caretOverride;
+
+		memory += e.getMemory();
+		index = 0;
+		trim();
 	}
 	
 	// Replaces all the given instances 'indexes' of String 'string' with String 'replace'.
 	public void replaceAll(int[] indexes, String[] olds, String replace) {
 		pop();
 		crack();
+
+		Edit e = get(0);
+		memory -= e.getMemory();
 		
-		list.get(0).action = Action.REPLACE_ALL;
-		list.get(0).offsets = indexes;
-		list.get(0).olds = olds;
-		list.get(0).data = replace;
-		
+		e.action = Action.REPLACE_ALL;
+		e.offsets = indexes;
+		e.olds = olds;
+		e.data.append(replace);
+
+		memory += e.getMemory();
 		index = 0;
+		trim();
 	}
 
 	public void crack() {
-		if (list.get(0).action != Action.NONE) {
+		if (get(0).action != Action.NONE) {
 			push();
 		}
 	}
 
 	public void pop() {
+		// Drops the edits that were undone, since they can't be redone
+		// once something else is edited.
+
 		if (index != 0) {
 			for (; index > 0; index--) {
-				list.remove(0);
+				memory -= get(0).getMemory();
+				history[newest] = null;
+				newest = (newest - 1) & (history.length - 1);
+				count--;
 			}
 
 			push();
@@ -277,7 +507,131 @@ public class EditManager {
 	}
 
 	public void push() {
-		list.add(0, new Edit());
+		if (count == history.length) {
+			grow();
+		}
+
+		newest = (newest + 1) & (history.length - 1);
+		history[newest] = new Edit();
+		memory += history[newest].getMemory();
+		count++;
 		index++;
 	}
+
+	private void grow() {
+		// The ring is full, so it is doubled, oldest edit first.
+
+		Edit[] grown = new Edit[history.length * 2];
+
+		for (int i = 0; i < count; i++) {
+			grown[i] = get(count - 1 - i);
+		}
+
+		history = grown;
+		newest = count - 1;
+	}
+
+	private void trim() {
+		// Moves the oldest edits out to disk while the history is over
+		// its budget, always keeping the newest. If they can't be, they
+		// are let go instead.
+
+		long budget = Defaults.UNDO_MEMORY * 1024L * 1024L;
+
+		while (budget > 0 && memory > budget && count > 1) {
+			int oldest = (newest - count + 1) & (history.length - 1);
+
+			if (!writeOut(history[oldest])) {
+				close();
+			}
+
+			memory -= history[oldest].getMemory();
+			history[oldest] = null;
+			count--;
+		}
+	}
+
+	private boolean writeOut(Edit e) {
+		// Adds e to the end of the file.
+
+		try {
+			if (spill == null) {
+				spillFile = File.createTempFile("brocessing_undo", ".tmp");
+				spillFile.deleteOnExit();
+				spill = new RandomAccessFile(spillFile, "rw");
+			}
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			e.write(out);
+			out.writeInt(bytes.size());
+
+			spill.seek(spillEnd);
+			spill.write(bytes.toByteArray());
+
+			spillEnd += bytes.size();
+			spilled++;
+			return true;
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+
+	private void readBack() {
+		// Takes the last edit written out back off the end of the file,
+		// as the oldest one in memory.
+
+		try {
+			spill.seek(spillEnd - 4);
+			int length = spill.readInt();
+
+			byte[] bytes = new byte[length];
+			spill.seek(spillEnd - 4 - length);
+			spill.readFully(bytes);
+
+			Edit e = new Edit();
+			e.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+
+			spillEnd -= 4 + length;
+			spilled--;
+
+			if (count == history.length) {
+				grow();
+			}
+
+			history[(newest - count) & (history.length - 1)] = e;
+			memory += e.getMemory();
+			count++;
+		} catch (IOException ex) {
+			// The rest of the history can't be undone.
+			close();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s)
+						throws IOException {
+		// Strings are written as their length, or -1 for null, and
+		// then their chars.
+
+		if (s == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(s.length());
+			out.writeChars(s);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = in.readChar();
+		}
+
+		return new String(chars);
+	}
 }
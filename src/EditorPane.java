@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B
 *	Created: 2021-08-20
-*	Modified: 2021-12-28
+*	Modified: 2026-10-18
 *
 *	This contains the JTextPane, which needs to be in
 *	a JPanel to prevent it from line-wrapping.
@@ -12,12 +12,21 @@ import javax.swing.JPanel;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
+import javax.swing.JViewport;
 import javax.swing.SwingUtilities;
 import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
 import javax.swing.JMenuItem;
 
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.Caret;
+import javax.swing.text.EditorKit;
+import javax.swing.text.GapContent;
+import javax.swing.text.PlainDocument;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
@@ -28,6 +37,7 @@ import java.awt.BorderLayout;
 import java.awt.Cursor;
 import java.awt.FontMetrics;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.Toolkit;
 
 import java.awt.image.BufferedImage;
@@ -45,16 +55,20 @@ import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.DataFlavor;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.file.AccessDeniedException;
+import java.nio.file.StandardOpenOption;
 
 import java.util.ArrayList;
 
+import java.util.concurrent.Future;
+
 
 @SuppressWarnings("serial")
 public class EditorPane extends JPanel implements KeyListener, 
-		MouseListener, MouseMotionListener, Runnable {
+		MouseListener, MouseMotionListener, DocumentListener {
 			
 	private static final Cursor invisible = Toolkit.getDefaultToolkit()
 		.createCustomCursor(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB),
@@ -64,43 +78,49 @@ public class EditorPane extends JPanel implements KeyListener,
 	private static char[] OPENERS = {'{', '[', '(', '<', '"', '\''};
 	private static char[] CLOSERS = {'}', ']', ')', '>', '"', '\''};
 
-	private JTextPane text = new JTextPane() {
-		@Override
-		public void cut() {
-			getTabbedPane().cut();
-		}
-
-		@Override
-		public void copy() {
-			getTabbedPane().copy();
-		}
-
-		@Override
-		public void paste() {
-			getTabbedPane().paste();
-		}
-
-		private TabbedPane getTabbedPane() {
-			return PCIE.getWindow().getTabbedPane();
-		}
-	};
+	private JTextPane text;
 
 	private File file = null;
-	private StyledDocument doc = text.getStyledDocument();
-	private HighlightManager highlightMgr = new HighlightManager(doc);
-	private EditManager editMgr = new EditManager(text, highlightMgr);
+	private StyledDocument doc;
+	private HighlightManager highlightMgr;
+	private EditManager editMgr;
 	private Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-	private Caret docCaret = text.getCaret();
-	private ActiveLine activeLine = new ActiveLine(text);
-	private WidthMask widthMask = new WidthMask(text);
-	private BracketMatch bracketMatch = new BracketMatch(text, highlightMgr);
+	private Caret docCaret;
+	private ActiveLine activeLine;
+	private WidthMask widthMask;
+	private BracketMatch bracketMatch;
 
 	private int startingCaret = 0, activeClickCount,
 		wordSelectionStart, wordSelectionEnd,
 		wordOriginStart, wordOriginEnd;
 	private int lastTypedChar;
 	private boolean unbrokenOpening = false;
-	private ArrayList<Integer> centerPressedLast = new ArrayList<Integer>();
+
+	// Set from when the middle button is pressed on X11 until the click
+	// is over, since the XSelection is pasted during the click.
+	private boolean selectionPasteExpected = false;
+
+	// The file being read in, and whether the text read so far
+	// is being highlighted yet.
+	private FileLoader loader = null;
+	private boolean highlighting = false;
+
+	// Counts the edits to the text, so a save can tell whether the
+	// text was edited while it was being written.
+	private int edits = 0;
+
+	// Keeps the edits made since the last save, so they can be put back
+	// if the editor doesn't close properly. It is started once the text
+	// is the same as the file, and closed once no saves are being written.
+	private EditJournal journal = null;
+	private EditJournal.Recovery recovery = null;
+
+	private int saving = 0;
+	private boolean closed = false;
+
+	// Whether a save of the file failed after the tab was closed, so
+	// the journal has the only copy of the edits.
+	private boolean lostSave = false;
 	
 	private JPopupMenu popup = new JPopupMenu();
 	private JMenuItem cut = new JMenuItem("Cut");
@@ -110,6 +130,60 @@ public class EditorPane extends JPanel implements KeyListener,
 	private JMenuItem redo = new JMenuItem("Redo");
 
 	public EditorPane() {
+		this(new GapContent());
+	}
+
+	public EditorPane(AbstractDocument.Content content) {
+		// The content holds the text, so a tab can pick the
+		// one that suits the size of the file it is opening.
+
+		text = new JTextPane(new SyntaxDocument(content)) {
+			@Override
+			protected EditorKit createDefaultEditorKit() {
+				// Shows the highlighting without it being
+				// written into the document's attributes,
+				// unless the text is set to be styled.
+				if (Defaults.PAINT_HIGHLIGHT) {
+					return new SyntaxKit();
+				}
+
+				return super.createDefaultEditorKit();
+			}
+
+			@Override
+			public void cut() {
+				getTabbedPane().cut();
+			}
+
+			@Override
+			public void copy() {
+				getTabbedPane().copy();
+			}
+
+			@Override
+			public void paste() {
+				getTabbedPane().paste();
+			}
+
+			private TabbedPane getTabbedPane() {
+				return PCIE.getWindow().getTabbedPane();
+			}
+		};
+
+		doc = text.getStyledDocument();
+
+		// Listeners are told about edits last added first, so this is
+		// added first to be told after the highlighter has moved its
+		// ranges along with the text.
+		doc.addDocumentListener(this);
+
+		highlightMgr = new HighlightManager(doc);
+		editMgr = new EditManager(text, highlightMgr);
+		docCaret = text.getCaret();
+		activeLine = new ActiveLine(text);
+		widthMask = new WidthMask(text);
+		bracketMatch = new BracketMatch(text, highlightMgr);
+
 		setTabs();
 		
 		updateOptions();
@@ -197,47 +271,94 @@ public class EditorPane extends JPanel implements KeyListener,
 		StyleConstants.setTabSet(attributeSet, tabSet);
 		StyledDocument doc = text.getStyledDocument();
 		doc.setParagraphAttributes(0, doc.getLength(), attributeSet, false);
+
+		// The SyntaxView lays tabs out by this instead.
+		doc.putProperty(PlainDocument.tabSizeAttribute, Defaults.TAB_WIDTH);
+	}
+
+	public Future<Boolean> save() {
+		return save(file, true);
 	}
 
-	public File save() {
-		return save(file);
+	public Future<Boolean> save(File f) {
+		// Saves a copy of the text to f, which isn't the file this
+		// editor is for, so the tab's saved state is left alone.
+
+		return save(f, false);
 	}
 
-	public File save(File f) {
+	private Future<Boolean> save(final File f, final boolean ownFile) {
+		// Writes the text as it is now on the save service's thread,
+		// or returns null if it can't be saved yet.
+
 		if (f == null) {
 			throw new NullPointerException("A file was not set");
 		}
 
-		try {
-			FileWriter writer = new FileWriter(f);
-			writer.write(ensureEndline(text.getText()));
-			writer.close();
-		} catch (FileNotFoundException fnfe) {
-			f = null;
-			saveError("You do not have permission to save there.");
-		} catch (Exception e) {
-			f = null;
-			saveError("The file could not be saved for an unknown reason.");
+		// Only part of the file is in the editor until it is read in,
+		// so saving then would cut the rest of it off.
+		if (loader != null) {
+			saveError("The file is still being opened.", f, ownFile);
+			return null;
 		}
 
-		return f;
-	}
-	
-	private String ensureEndline(String s) {
-		if (s.length() == 0) {
-			return "\n";
+		// The tab is only saved once the save is done, and only if
+		// nothing has been edited since the text was taken.
+		final int version = edits;
+
+		if (ownFile && journal != null) {
+			journal.saveStarted();
 		}
+		saving++;
+
+		return SaveService.save(f, ((SyntaxDocument) doc).getSnapshot(),
+							new SaveListener() {
+			public void saveDone(File file, Exception error) {
+				saving--;
+
+				if (ownFile && journal != null) {
+					journal.saveDone(f, error == null);
+				}
+
+				// A closed tab's journal is closed once its last save is
+				// done, and kept if one of them failed.
+				if (closed && ownFile && error != null) {
+					lostSave = true;
+				}
+				if (closed && saving == 0) {
+					closeJournal();
+				}
+
+				if (error instanceof AccessDeniedException) {
+					saveError("You do not have permission to save there.",
+								f, ownFile);
+				} else if (error != null) {
+					saveError("The file could not be saved for an unknown reason.",
+								f, ownFile);
+				} else if (ownFile && version == edits && !closed) {
+					setSaved(true);
+				}
+			}
+		});
+	}
+
+	private void setSaved(boolean saved) {
+		DocEditor editor = (DocEditor) SwingUtilities.getAncestorOfClass(
+							DocEditor.class, this);
 
-		if (s.charAt(s.length() - 1) != '\n') {
-			s += '\n';
+		if (editor != null && PCIE.getWindow() != null) {
+			PCIE.getWindow().getTabbedPane().setSaved(editor, saved);
 		}
-		
-		return s;
 	}
 
-	public void saveAs(File file) {
+	public Future<Boolean> saveAs(File file) {
+		if (loader != null) {
+			saveError("The file is still being opened.", file, false);
+			return null;
+		}
+
 		this.file = file;
-		save();
+		return save();
 	}
 
 	public void setCaretPosition(int pos) {
@@ -249,30 +370,19 @@ public class EditorPane extends JPanel implements KeyListener,
 	}
 
 	public boolean open(File file) {
-		try {
-			FileInputStream input = new FileInputStream(file);
-			byte[] data = new byte[(int)file.length()];
+		// Starts reading file into the editor on its own thread. The
+		// text is added as it is read, so this returns straight away.
 
-			input.read(data);
-			input.close();
+		try {
+			FileChannel channel = FileChannel.open(file.toPath(),
+							StandardOpenOption.READ);
 
 			bracketMatch.clear();
-			
-			String s = new String(data, "UTF-8");
-			if (s.charAt(s.length() - 1) == '\n') {
-				s = s.substring(0, s.length() - 1);
-			}
-
-			text.setText(s);
-			text.setCaretPosition(0);
-
-			highlightMgr.recalculate();
-			highlightMgr.repaint();
-
-			bracketMatch.highlight();
-
 			this.file = file;
 
+			loader = new FileLoader(this, channel);
+			loader.start();
+
 			return true;
 		} catch (Exception e) {
 			JOptionPane.showMessageDialog(PCIE.getWindow(),
@@ -285,7 +395,184 @@ public class EditorPane extends JPanel implements KeyListener,
 		}
 	}
 
-	private void saveError(String message) {
+	public void append(String chunk, double progress) {
+		// Adds the next chunk of the file being opened to the end. Only
+		// the text that was read is lexed, and only once there is enough
+		// of it to fill the viewport, so the first screen is shown before
+		// the lexer starts.
+
+		int offset = doc.getLength();
+
+		try {
+			doc.insertString(offset, chunk, null);
+		} catch (BadLocationException e) {
+			ErrorMgr.show(e, "Error adding the file's text.");
+		}
+
+		if (offset == 0) {
+			text.setCaretPosition(0);
+		}
+
+		if (highlighting) {
+			highlightMgr.schedule(new Range(offset, chunk.length()));
+		} else if (fillsViewport()) {
+			highlighting = true;
+			highlightMgr.schedule();
+		}
+
+		setProgress(progress);
+	}
+
+	public void loadFinished() {
+		// Highlighting from the last time the file was closed is shown
+		// as soon as the whole file is in, if the file hasn't changed.
+
+		loader = null;
+		setProgress(-1);
+
+		DocumentText shown = new DocumentText(doc);
+		if (!highlightMgr.setTokens(TokenCache.get(file, shown)) && !highlighting) {
+			highlightMgr.schedule();
+		}
+
+		highlighting = true;
+
+		startJournal();
+		if (recovery != null && !recover(recovery)) {
+			JOptionPane.showMessageDialog(text,
+				"Some unsaved edits to " + file.getName() + " could not be " +
+				"recovered.\nThey were kept to try again the next time the " +
+				"editor starts.",
+				"Recovered Edits",
+				JOptionPane.WARNING_MESSAGE
+			);
+		}
+	}
+
+	public void loadFailed() {
+		// Keeps what was read, but a save would cut off the rest of the
+		// file, so the editor is set to save to a new file instead.
+
+		loader = null;
+		file = null;
+		setProgress(-1);
+
+		if (!highlighting) {
+			highlighting = true;
+			highlightMgr.schedule();
+		}
+
+		JOptionPane.showMessageDialog(PCIE.getWindow(),
+			"The selected file could not be read to the end.",
+			"File Error",
+			JOptionPane.ERROR_MESSAGE
+		);
+	}
+
+	public boolean isLoading() {
+		return loader != null;
+	}
+
+	public void close() {
+		// Stops reading the file, and stops journaling once any saves
+		// being written are done, since the tab is closing.
+
+		if (loader != null) {
+			loader.cancel();
+			loader = null;
+		}
+
+		closed = true;
+		if (saving == 0) {
+			closeJournal();
+		}
+
+		editMgr.close();
+	}
+
+	public void startJournal() {
+		// Journals the edits made from here on, while the text is the
+		// same as the file, or empty if there isn't one.
+
+		if (journal == null && !closed) {
+			journal = EditJournal.start(file, doc);
+		}
+	}
+
+	private void closeJournal() {
+		if (journal != null) {
+			journal.close(lostSave);
+			journal = null;
+		}
+	}
+
+	public boolean recover(EditJournal.Recovery recovery) {
+		// Puts back the edits from a journal left behind by an editor
+		// that didn't close properly, once the file has been read in.
+		// Returns false if they couldn't all be put back.
+
+		if (loader != null) {
+			this.recovery = recovery;
+			return true;
+		}
+
+		this.recovery = null;
+		boolean applied = recovery.apply(doc);
+		setSaved(false);
+
+		// The highlighting, which may have come from the token cache,
+		// was for the text before the edits.
+		highlightMgr.schedule();
+
+		return applied;
+	}
+
+	private boolean fillsViewport() {
+		// Whether the text read so far reaches past the bottom of the
+		// viewport. A viewport that hasn't been laid out yet is taken
+		// to be filled by the first chunk, which is a screen or more.
+
+		JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(
+							JViewport.class, this);
+		if (viewport == null || viewport.getHeight() == 0) {
+			return true;
+		}
+
+		Rectangle shown = viewport.getViewRect();
+		int lineHeight = getFontMetrics(Defaults.EDITOR_FONT).getHeight();
+
+		return LineIndex.get(doc).getLineCount() >
+				(shown.y + shown.height) / lineHeight + 1;
+	}
+
+	private void setProgress(double progress) {
+		// Shows how much of the file has been read on its tab.
+
+		DocEditor editor = (DocEditor) SwingUtilities.getAncestorOfClass(
+							DocEditor.class, this);
+
+		if (editor != null && PCIE.getWindow() != null) {
+			PCIE.getWindow().getTabbedPane().setProgress(editor, progress);
+		}
+	}
+
+	public void cacheTokens() {
+		// Stores the highlighting of the file in the token cache. This
+		// should only be done while the text is the same as the file.
+
+		if (file == null || loader != null) {
+			return;
+		}
+
+		try {
+			TokenCache.put(file, new DocumentText(doc),
+						highlightMgr.getTokens());
+		} catch (Exception e) {
+			ErrorMgr.show(e, "Error caching the file's highlighting.");
+		}
+	}
+
+	private void saveError(String message, File f, boolean ownFile) {
 		String[] options = {"Try Again", "Close Dialog", "Quit"};
 		int option = JOptionPane.showOptionDialog(
 			text,
@@ -299,14 +586,14 @@ public class EditorPane extends JPanel implements KeyListener,
 		);
 
 		if (option == 0) {
-			save();
+			save(f, ownFile);
 		} else if (option == 2) {
 			PCIE.getWindow().dispose();
 		}
 	}
 
 	public boolean inUse() {
-		return (file != null || !text.getText().equals(""));
+		return (file != null || doc.getLength() > 0);
 	}
 
 	@Override
@@ -353,10 +640,7 @@ public class EditorPane extends JPanel implements KeyListener,
 
 				doc.remove(start, text.getSelectionEnd() - start);
 
-				highlightMgr.recalculate();
-				highlightMgr.repaint(new Range(start, 0));
-
-				bracketMatch.highlight();
+				highlightMgr.schedule(new Range(start, 0));
 
 				return true;
 			} catch (Exception e) {
@@ -398,10 +682,7 @@ public class EditorPane extends JPanel implements KeyListener,
 				doc.insertString(caretPosition, s, null);
 				editMgr.crack();
 
-				highlightMgr.recalculate();
-				highlightMgr.repaint(new Range(caretPosition, s.length()));
-
-				bracketMatch.highlight();
+				highlightMgr.schedule(new Range(caretPosition, s.length()));
 
 				return true;
 			}
@@ -658,10 +939,7 @@ public class EditorPane extends JPanel implements KeyListener,
 					editMgr.add(insert, caret, newCaret);
 					text.setCaretPosition(newCaret);
 
-					highlightMgr.recalculate();
-					highlightMgr.repaint(new Range(caret, insert.length()));
-
-					bracketMatch.highlight();
+					highlightMgr.schedule(new Range(caret, insert.length()));
 					
 					// Everything's now been handled.
 					ke.consume();
@@ -675,10 +953,7 @@ public class EditorPane extends JPanel implements KeyListener,
 
 				SwingUtilities.invokeLater(new Runnable() {
 					public void run() {
-						highlightMgr.recalculate();
-						highlightMgr.repaint(new Range(selStart, 1));
-
-						bracketMatch.highlight();
+						highlightMgr.schedule(new Range(selStart, 1));
 					}
 				});
 			}
@@ -697,10 +972,7 @@ public class EditorPane extends JPanel implements KeyListener,
 							editMgr.add("	", caret);
 							doc.insertString(caret, "	", null);
 							
-							highlightMgr.recalculate();
-							highlightMgr.repaint(new Range(caret, 1));
-
-							bracketMatch.highlight();
+							highlightMgr.schedule(new Range(caret, 1));
 						} catch (Exception e) {
 							ErrorMgr.show(e,"Error in manual tab insert.");
 						}
@@ -737,11 +1009,8 @@ public class EditorPane extends JPanel implements KeyListener,
 
 						SwingUtilities.invokeLater(new Runnable() {
 							public void run() {
-								highlightMgr.recalculate();
-								highlightMgr.repaint(
+								highlightMgr.schedule(
 										new Range(caret,1));
-
-								bracketMatch.highlight();
 							}
 						});
 					}
@@ -779,12 +1048,9 @@ public class EditorPane extends JPanel implements KeyListener,
 							doc.remove(start, len);
 							doc.insertString(start, string, null);
 
-							highlightMgr.recalculate();
-							highlightMgr.repaint(new Range(
+							highlightMgr.schedule(new Range(
 									start, string.length()));
 
-							bracketMatch.highlight();
-
 							select(start, start + string.length());
 						} else {
 							string = indent(selection);
@@ -795,13 +1061,10 @@ public class EditorPane extends JPanel implements KeyListener,
 							doc.remove(selStart, selection.length());
 							doc.insertString(selStart, string, null);
 
-							highlightMgr.recalculate();
-							highlightMgr.repaint(
+							highlightMgr.schedule(
 								new Range(selStart, string.length()));
 
 
-							bracketMatch.highlight();
-
 							select(selStart, selStart + string.length());
 						}
 					} catch (Exception e) {
@@ -1098,8 +1361,6 @@ public class EditorPane extends JPanel implements KeyListener,
 
 									text.setCaretPosition(caret+1);
 									handled = true;
-
-									bracketMatch.highlight();
 									
 									editMgr.crack();
 								} else {
@@ -1115,9 +1376,7 @@ public class EditorPane extends JPanel implements KeyListener,
 										doc.insertString(caret,
 											"\"", null);
 
-										highlightMgr
-											.recalculate();
-										highlightMgr.repaint(
+										highlightMgr.schedule(
 											new Range(
 											caret, 1));
 
@@ -1154,8 +1413,6 @@ public class EditorPane extends JPanel implements KeyListener,
 
 								text.setCaretPosition(caret + 1);
 								handled = true;
-
-								bracketMatch.highlight();
 								
 								editMgr.crack();
 							}
@@ -1174,8 +1431,6 @@ public class EditorPane extends JPanel implements KeyListener,
 
 							text.setCaretPosition(caret + 1);
 							handled = true;
-
-							bracketMatch.highlight();
 							
 							editMgr.crack();
 						}
@@ -1212,15 +1467,12 @@ public class EditorPane extends JPanel implements KeyListener,
 								editMgr.add(string, caret, caret + 1);
 								editMgr.crack();
 
-								highlightMgr.recalculate();
-								highlightMgr.repaint(new Range(caret,
+								highlightMgr.schedule(new Range(caret,
 										string.length()));
 
 								text.setCaretPosition(caret + 1);
 								handled = true;
 
-								bracketMatch.highlight();
-
 								unbrokenOpening = true;
 							} catch (Exception e) {
 								ErrorMgr.show(e, "Error inserting" +
@@ -1240,10 +1492,7 @@ public class EditorPane extends JPanel implements KeyListener,
 						doc.insertString(caret, string, null);
 						editMgr.add(string, caret);
 
-						highlightMgr.recalculate();
-						highlightMgr.repaint(new Range(caret,string.length()));
-
-						bracketMatch.highlight();
+						highlightMgr.schedule(new Range(caret,string.length()));
 					} catch (Exception e) {
 						ErrorMgr.show(e, "Error typing in the document.");
 					}
@@ -1262,10 +1511,7 @@ public class EditorPane extends JPanel implements KeyListener,
 					ErrorMgr.show(e, "Error replacing text.");
 				}
 
-				highlightMgr.recalculate();
-				highlightMgr.repaint(new Range(start, string.length()));
-
-				bracketMatch.highlight();
+				highlightMgr.schedule(new Range(start, string.length()));
 			}
 
 			PCIE.getWindow().getTabbedPane().setActiveSaved(false);
@@ -1300,12 +1546,9 @@ public class EditorPane extends JPanel implements KeyListener,
 
 			doc.insertString(caret + 1, string, null);
 
-			highlightMgr.recalculate();
-			highlightMgr.repaint(new Range(caret + 1, string.length()));
+			highlightMgr.schedule(new Range(caret + 1, string.length()));
 
 			text.setCaretPosition(caret + 1);
-
-			bracketMatch.highlight();
 			
 			unbrokenOpening = true;
 		} catch (Exception e) {
@@ -1335,8 +1578,7 @@ public class EditorPane extends JPanel implements KeyListener,
 			// This exists to handle pasting from the XSelection
 			// clipboard on X11 based linuxes.
 			
-			centerPressedLast.add(doc.getLength());
-			new Thread(this).start();
+			selectionPasteExpected = true;
 			return;
 		}
 		
@@ -1422,6 +1664,17 @@ public class EditorPane extends JPanel implements KeyListener,
 	}
 
 	public void mouseReleased(MouseEvent me) {
+		if (selectionPasteExpected) {
+			// The caret pastes when the click that comes after this
+			// is handled, so the paste is only stopped being waited
+			// for once that has happened.
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					selectionPasteExpected = false;
+				}
+			});
+		}
+
 		// This counteracts the default behaviour of JTextPane that
 		// selects the next character after a word if the selection
 		// requires the scroll pane to move. It cannot be stopped
@@ -1660,16 +1913,19 @@ public class EditorPane extends JPanel implements KeyListener,
 
 			bracketMatch.clear();
 
-			text.setText(output);
+			// Only the lines whose indentation changed are put in.
+			TextDiff diff = new TextDiff(input, output);
+			try {
+				diff.apply(doc);
+			} catch (BadLocationException e) {
+				ErrorMgr.show(e, "Error formatting the indentation.");
+			}
 			text.setCaretPosition(startingCaret);
 
 			PCIE.getWindow().getTabbedPane().setActiveSaved(false);
-			editMgr.replace(input, output, 0, startingCaret);
-
-			highlightMgr.recalculate();
-			highlightMgr.repaint();
+			editMgr.replace(diff, startingCaret);
 
-			bracketMatch.highlight();
+			highlightMgr.schedule(diff.getChanged(true));
 		}
 	}
 	
@@ -1931,10 +2187,7 @@ public class EditorPane extends JPanel implements KeyListener,
 			editMgr.remove(s, loc, reverse);
 			doc.remove(loc, s.length());
 
-			highlightMgr.recalculate();
-			highlightMgr.repaint(new Range(loc, 0));
-
-			bracketMatch.highlight();
+			highlightMgr.schedule(new Range(loc, 0));
 		} catch (Exception e) {
 			ErrorMgr.show(e, "Error removing text from the document.");
 		}
@@ -1958,45 +2211,41 @@ public class EditorPane extends JPanel implements KeyListener,
 		return -1;
 	}
 	
-	// Checks the flag that is set to true when the center
-	// mouse button is clicked on X11-based linux. This handles
-	// telling the edit manager about the paste.
-	public void run() {
+	public void insertUpdate(DocumentEvent e) {
+		// Tells the edit manager and highlighter about text pasted from
+		// the XSelection by a center click on X11-based linux, which
+		// Swing inserts itself, as soon as it is inserted.
+
+		edits++;
+
+		if (!selectionPasteExpected) {
+			return;
+		}
+
+		selectionPasteExpected = false;
+
 		try {
-			// This delay is required, because center click is managed
-			// by X11, and is called after all other events, so 250ms
-			// seems to be long enough to guarantee X11 has pasted text,
-			// if it is going to.
-			Thread.sleep(250);
-			
-			int len = doc.getLength() - centerPressedLast.get(0);
-			centerPressedLast.remove(0);
-			
-			if (len > 0) {
-				int caret = text.getCaretPosition();
-				
-				bracketMatch.clear();
-				
-				int start = caret - len;
-				String newText = doc.getText(start, len);
-				
-				editMgr.crack();
-				editMgr.add(newText, start);
+			int start = e.getOffset();
+			String newText = doc.getText(start, e.getLength());
 
-				highlightMgr.recalculate();
-				highlightMgr.repaint(new Range(start, newText.length()));
+			editMgr.crack();
+			editMgr.add(newText, start);
+			editMgr.crack();
 
-				bracketMatch.highlight();
-				
-				((DocEditor)getParent().getParent().getParent())  // Gets the DocEditor
-					.recalculateLines();
-				PCIE.getWindow().getTabbedPane().setActiveSaved(false);
-			}
-		} catch (Exception e) {
-			ErrorMgr.show(e, "Error retrieving text pasted during center click.");
+			highlightMgr.schedule(new Range(start, newText.length()));
+
+			PCIE.getWindow().getTabbedPane().setActiveSaved(false);
+		} catch (Exception ex) {
+			ErrorMgr.show(ex, "Error retrieving text pasted during center click.");
 		}
 	}
 
+	public void removeUpdate(DocumentEvent e) {
+		edits++;
+	}
+
+	public void changedUpdate(DocumentEvent e) {}
+
 	public static boolean isDelimiter(char c) {
 		return !charArrayContains(ANTI_DELIMITERS, c);
 	}
@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2022-01-01
-*	Modified: 2022-01-03
+*	Modified: 2026-10-18
 *
 *	Handles the automatic selecting of erronous lines.
 */
@@ -56,10 +56,8 @@ public class ErrorParser {
 			DocEditor docEditor = tabs.getComponentAt(index);
 
 			tabs.setActiveIndex(index);
-			if (tabs.getComponentAt(index).getEditor().getActiveLine().getCurrentLine() + 1
-											!= linenum)
-			{
-				docEditor.getFindManager().getLineFinder().setToIndexForLine(linenum);
+			if (docEditor.getCurrentLine() + 1 != linenum) {
+				docEditor.getLineFinder().setToIndexForLine(linenum);
 			}
 		}
 	}
@@ -0,0 +1,236 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Reads a file into an editor on its own thread, so a large file doesn't
+*	hold up the window while it is opened. The file is read through a
+*	channel and decoded a block at a time, and the text is handed to the
+*	editor in chunks as it goes. The first chunk is small so that the top
+*	of the file shows straight away, and the rest are larger so the editor
+*	isn't updated more often than it has to be. Chunks that pile up while
+*	the window is busy are put in together, as one.
+*/
+
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+
+public class FileLoader implements Runnable {
+	private static final int	FIRST_CHUNK = 16 * 1024,
+					CHUNK = 256 * 1024,
+					BLOCK_SIZE = 64 * 1024;
+
+	// How many chunks can be waiting for the editor at once, so a
+	// file that reads faster than it can be shown isn't all kept twice.
+	private static final int MAX_WAITING = 4;
+
+	private EditorPane editor;
+	private FileChannel channel;
+
+	private Semaphore waiting = new Semaphore(MAX_WAITING);
+	private volatile boolean cancelled = false;
+
+	// The chunks waiting for the editor, how far through the file the
+	// last of them is, and whether the editor has been asked for them.
+	private ConcurrentLinkedQueue<String> queued = new ConcurrentLinkedQueue<String>();
+	private volatile double progress = 0;
+	private AtomicBoolean posted = new AtomicBoolean(false);
+
+	// Line endings are turned into '\n' as the text is read, like
+	// the editor kit does, and the last newline in the file is left
+	// off, so each chunk is held back by a '\r' or '\n' at its end.
+	private boolean lastWasReturn = false, newlineHeld = false;
+
+	public FileLoader(EditorPane editor, FileChannel channel) {
+		this.editor = editor;
+		this.channel = channel;
+	}
+
+	public void start() {
+		new Thread(this, "File Loader").start();
+	}
+
+	public void cancel() {
+		// Stops reading. Chunks that were already read are dropped.
+
+		cancelled = true;
+	}
+
+	public void run() {
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		ByteBuffer bytes = ByteBuffer.allocateDirect(BLOCK_SIZE);
+		CharBuffer chars = CharBuffer.allocate(BLOCK_SIZE);
+		StringBuilder chunk = new StringBuilder(FIRST_CHUNK);
+		int chunkSize = FIRST_CHUNK;
+
+		try {
+			long size = channel.size(), read = 0;
+			boolean done = false;
+
+			while (!done && !cancelled) {
+				int count = channel.read(bytes);
+
+				if (count < 0) {
+					done = true;
+				} else {
+					read += count;
+				}
+
+				// A character cut off at the end of the block is
+				// left in the buffer for the next one.
+				bytes.flip();
+				CoderResult result;
+				do {
+					result = decoder.decode(bytes, chars, done);
+					copy(chars, chunk);
+				} while (result.isOverflow());
+
+				if (done) {
+					while (decoder.flush(chars).isOverflow()) {
+						copy(chars, chunk);
+					}
+					copy(chars, chunk);
+				}
+				bytes.compact();
+
+				if (chunk.length() >= chunkSize || done) {
+					double progress = (size == 0) ? 1 : (double) read / size;
+					post(chunk.toString(), done ? 1 : Math.min(progress, 1));
+
+					chunk.setLength(0);
+					chunkSize = CHUNK;
+				}
+			}
+		} catch (IOException e) {
+			if (!cancelled) {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						editor.loadFailed();
+					}
+				});
+			}
+			return;
+		} catch (InterruptedException e) {
+			// Only happens if the thread is stopped, which means the
+			// editor has gone away.
+			return;
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Nothing else is read from it, so it doesn't matter.
+			}
+		}
+
+		if (!cancelled) {
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					if (!cancelled) {
+						editor.loadFinished();
+					}
+				}
+			});
+		}
+	}
+
+	private void copy(CharBuffer chars, StringBuilder chunk) {
+		// Moves the decoded text into chunk, turning "\r\n" and '\r'
+		// into '\n' and holding back the last newline.
+
+		chars.flip();
+
+		while (chars.hasRemaining()) {
+			char c = chars.get();
+
+			if (lastWasReturn) {
+				lastWasReturn = false;
+
+				if (c == '\n') {
+					continue;
+				}
+			}
+
+			if (c == '\r') {
+				lastWasReturn = true;
+				c = '\n';
+			}
+
+			if (newlineHeld) {
+				chunk.append('\n');
+				newlineHeld = false;
+			}
+
+			if (c == '\n') {
+				newlineHeld = true;
+			} else {
+				chunk.append(c);
+			}
+		}
+
+		chars.clear();
+	}
+
+	private void post(String text, double progress) throws InterruptedException {
+		// Hands text to the editor, waiting first if it is still
+		// behind on the chunks it was already given. The editor is
+		// only asked once for any number of chunks waiting at once.
+
+		waiting.acquire();
+
+		this.progress = progress;
+		queued.add(text);
+
+		if (posted.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					append();
+				}
+			});
+		}
+	}
+
+	private void append() {
+		// Puts every chunk that is waiting into the editor at once, on
+		// the event thread. Chunks added after the flag is cleared ask
+		// the editor again, so one may find them already put in.
+
+		posted.set(false);
+
+		double shown = progress;
+		StringBuilder text = new StringBuilder();
+		int count = 0;
+
+		String chunk;
+		while ((chunk = queued.poll()) != null) {
+			text.append(chunk);
+			count++;
+		}
+
+		waiting.release(count);
+
+		if (count > 0 && !cancelled) {
+			editor.append(text.toString(), shown);
+		}
+	}
+}
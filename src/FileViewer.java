@@ -0,0 +1,521 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	A read-only view of a file too large to open in the editor, such as
+*	a log or a generated data file. The file is mapped into memory
+*	instead of read, and only the lines that are showing are decoded and
+*	drawn, so the view uses about the same memory whatever the file's
+*	size. Text can be selected, copied and searched, and the file can be
+*	opened in the editor from the popup menu.
+*
+*	Reading the lines and searching the file are done off the event thread,
+*	since they can take seconds in a file of gigabytes. The view is sized
+*	from a guess at the number of lines until the lines have been indexed.
+*/
+
+
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.swing.JComponent;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPopupMenu;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+
+
+@SuppressWarnings("serial")
+public class FileViewer extends JComponent implements	Scrollable,
+							MouseListener,
+							MouseMotionListener
+{
+	private static final int MARGIN = 4;
+
+	// Only this much of a line is shown, since a file without
+	// newlines would otherwise be decoded whole to show it.
+	private static final int MAX_LINE = 16 * 1024;
+
+	// Copying more than this would need more memory than it saves.
+	private static final long MAX_COPY = 64L * 1024 * 1024;
+
+	private MappedText text;
+	private Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+
+	private FontMetrics metrics;
+	private int lineHeight, ascent;
+
+	// The number of lines and widest line the view is sized for,
+	// which grow as more of the file is scanned and shown.
+	private int lineCount, widest = 0;
+
+	// The selection is from anchor to caret, as byte offsets.
+	private long anchor = 0, caret = 0;
+	private String needle = null;
+
+	// The thread finding the needle, if any, and how many finds have
+	// been started, so only the latest one's match is selected.
+	private Thread finder = null;
+	private int finds = 0;
+
+	private JPopupMenu popup = new JPopupMenu();
+
+	public FileViewer(File file) throws IOException {
+		text = new MappedText(file);
+		lineCount = text.getLineCount();
+
+		text.startIndexing(new Runnable() {
+			public void run() {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						lineCount = text.getLineCount();
+						revalidate();
+						repaint();
+					}
+				});
+			}
+		});
+
+		addMouseListener(this);
+		addMouseMotionListener(this);
+		setFocusable(true);
+		setOpaque(true);
+
+		createPopupMenu();
+		updateOptions();
+	}
+
+	private void createPopupMenu() {
+		JMenuItem copy = new JMenuItem("Copy");
+		JMenuItem find = new JMenuItem("Find...");
+		JMenuItem edit = new JMenuItem("Edit File");
+
+		copy.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ae) {
+				copy();
+			}
+		});
+
+		find.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ae) {
+				find();
+			}
+		});
+
+		edit.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ae) {
+				DocEditor editor = (DocEditor) SwingUtilities.getAncestorOfClass(
+								DocEditor.class, FileViewer.this);
+
+				if (editor != null) {
+					editor.startEditing();
+				}
+			}
+		});
+
+		popup.add(copy);
+		popup.add(find);
+		popup.addSeparator();
+		popup.add(edit);
+	}
+
+	public void updateOptions() {
+		setFont(Defaults.EDITOR_FONT);
+		setBackground(Defaults.EDITOR_BACKGROUND_COLOR);
+		setForeground(Defaults.EDITOR_FONT_COLOR);
+
+		metrics = getFontMetrics(Defaults.EDITOR_FONT);
+		lineHeight = metrics.getHeight();
+		ascent = metrics.getAscent();
+		widest = 0;
+
+		revalidate();
+		repaint();
+	}
+
+	public File getFile() {
+		return text.getFile();
+	}
+
+	public void close() {
+		// Stops anything still reading the file.
+
+		text.close();
+		if (finder != null) {
+			finder.interrupt();
+		}
+	}
+
+	public long length() {
+		return text.length();
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		long height = (long) lineCount * lineHeight;
+		return new Dimension(widest + MARGIN * 2,
+				(int) Math.min(height, Integer.MAX_VALUE));
+	}
+
+	@Override
+	public void paintComponent(Graphics g) {
+		// Only the lines in the clip are decoded and drawn.
+
+		Rectangle clip = g.getClipBounds();
+		g.setColor(getBackground());
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+		g.setFont(getFont());
+
+		long selStart = Math.min(anchor, caret), selEnd = Math.max(anchor, caret);
+		Color selection = getSelectionColor();
+		int first = clip.y / lineHeight, last = (clip.y + clip.height) / lineHeight;
+		int oldWidest = widest;
+
+		long start = text.getLineStart(first);
+		for (int line = first; line <= last; line++) {
+			if (line > 0 && start >= text.length()) {
+				break;
+			}
+
+			long end = text.getLineEnd(start);
+			String s = getLine(start, end);
+			int y = line * lineHeight;
+
+			if (selStart < selEnd && selStart <= end && selEnd > start) {
+				int x1 = xOf(s, start, Math.max(selStart, start));
+				int x2 = (selEnd > end) ? getWidth() : xOf(s, start, selEnd);
+
+				g.setColor(selection);
+				g.fillRect(x1, y, x2 - x1, lineHeight);
+			}
+
+			String shown = expandTabs(s);
+			g.setColor(getForeground());
+			g.drawString(shown, MARGIN, y + ascent);
+
+			widest = Math.max(widest, metrics.stringWidth(shown));
+			start = nextLine(end);
+		}
+
+		// The view is resized as the guess at the number of lines
+		// changes, and lines wider than any before are shown.
+		int count = text.getLineCount();
+		if (count != lineCount || widest != oldWidest) {
+			lineCount = count;
+
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					revalidate();
+				}
+			});
+		}
+	}
+
+	private Color getSelectionColor() {
+		Color c = Defaults.EDITOR_FONT_COLOR;
+		return new Color(c.getRed(), c.getGreen(), c.getBlue(), 64);
+	}
+
+	private String getLine(long start, long end) {
+		return text.getString(start, Math.min(end, start + MAX_LINE));
+	}
+
+	private long nextLine(long lineEnd) {
+		// The start of the line after the one ending at lineEnd.
+
+		long offset = text.indexOf((byte) '\n', lineEnd, text.length());
+		return (offset == -1) ? text.length() : offset + 1;
+	}
+
+	private String expandTabs(String s) {
+		if (s.indexOf('\t') == -1) {
+			return s;
+		}
+
+		StringBuilder out = new StringBuilder(s.length() + Defaults.TAB_WIDTH);
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) == '\t') {
+				do {
+					out.append(' ');
+				} while (out.length() % Defaults.TAB_WIDTH != 0);
+			} else {
+				out.append(s.charAt(i));
+			}
+		}
+
+		return out.toString();
+	}
+
+	private int xOf(String line, long lineStart, long offset) {
+		// The x position of offset, on the line starting at lineStart
+		// whose shown text is line.
+
+		int chars = charsIn(line, (int) Math.min(offset - lineStart, MAX_LINE));
+		return MARGIN + metrics.stringWidth(expandTabs(line.substring(0, chars)));
+	}
+
+	private static int charsIn(String s, int bytes) {
+		// The number of chars of s that the first bytes bytes of
+		// its UTF-8 encoding decode to.
+
+		int i = 0;
+		while (i < s.length() && bytes > 0) {
+			bytes -= utf8Length(s.charAt(i));
+			i++;
+		}
+
+		return i;
+	}
+
+	private static int utf8Length(char c) {
+		// Surrogates come in pairs, which take four bytes together.
+
+		if (c < 0x80) {
+			return 1;
+		} else if (c < 0x800) {
+			return 2;
+		} else if (Character.isSurrogate(c)) {
+			return 2;
+		}
+
+		return 3;
+	}
+
+	private long offsetAt(int x, int y) {
+		// The byte offset closest to the point x, y.
+
+		int line = Math.max(0, y / lineHeight);
+		long start = text.getLineStart(line);
+
+		if (line > 0 && start >= text.length()) {
+			start = text.getLineStart(text.getLineCount() - 1);
+		}
+
+		long end = text.getLineEnd(start);
+		String s = getLine(start, end);
+
+		int column = 0, bytes = 0, position = MARGIN;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			int width;
+
+			if (c == '\t') {
+				int spaces = Defaults.TAB_WIDTH - (column % Defaults.TAB_WIDTH);
+				width = spaces * metrics.charWidth(' ');
+				column += spaces;
+			} else {
+				width = metrics.charWidth(c);
+				column++;
+			}
+
+			if (x < position + width / 2) {
+				break;
+			}
+
+			position += width;
+			bytes += utf8Length(c);
+		}
+
+		return Math.min(start + bytes, end);
+	}
+
+	public void select(long start, long end) {
+		// Selects from start to end and scrolls to the start.
+
+		anchor = start;
+		caret = end;
+
+		int line = text.getLineOf(start);
+		long lineStart = text.getLineStart(line);
+		int x = xOf(getLine(lineStart, text.getLineEnd(lineStart)), lineStart, start);
+
+		scrollRectToVisible(new Rectangle(x, line * lineHeight, 1, lineHeight));
+		repaint();
+	}
+
+	public int getCurrentLine() {
+		return text.getLineOf(caret);
+	}
+
+	public int getLineCount() {
+		return text.getLineCount();
+	}
+
+	public void goToLine(int line) {
+		// Moves to the start of line, where the first line is 1. Until
+		// the lines are indexed, the count is only a guess, so lines
+		// past it are gone to as near as can be.
+
+		if (line >= 1 && (line <= text.getLineCount() || !text.isIndexed())) {
+			long start = text.getLineStart(line - 1);
+			select(start, start);
+		}
+	}
+
+	public String getSelectedText() {
+		long start = Math.min(anchor, caret), end = Math.max(anchor, caret);
+
+		if (start == end || end - start > MAX_COPY) {
+			return null;
+		}
+
+		return text.getString(start, end);
+	}
+
+	public boolean copy() {
+		String s = getSelectedText();
+
+		if (s != null) {
+			clipboard.setContents(new StringSelection(s), null);
+			return true;
+		}
+
+		return false;
+	}
+
+	public void find() {
+		// Asks what to find, and finds it after the caret.
+
+		Object s = JOptionPane.showInputDialog(this, "Find:", "Find",
+				JOptionPane.PLAIN_MESSAGE, null, null, needle);
+
+		if (s != null && !s.toString().isEmpty()) {
+			needle = s.toString();
+			findNext();
+		}
+	}
+
+	private void findNext() {
+		// Selects the next match for needle, starting over from the
+		// top if there are none after the caret. The file is searched
+		// on a thread of its own, and a find still going is stopped.
+
+		final byte[] bytes = needle.getBytes(StandardCharsets.UTF_8);
+		final long from = (anchor == caret) ? caret : Math.min(anchor, caret) + 1;
+		final int find = ++finds;
+
+		if (finder != null) {
+			finder.interrupt();
+		}
+
+		finder = new Thread(new Runnable() {
+			public void run() {
+				long found = text.find(bytes, from, text.length(), false);
+				if (found == -1) {
+					found = text.find(bytes, 0, from, false);
+				}
+
+				if (Thread.currentThread().isInterrupted()) {
+					return;
+				}
+
+				final long match = found;
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						found(find, match, bytes.length);
+					}
+				});
+			}
+		}, "Viewer Find");
+
+		setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		finder.setDaemon(true);
+		finder.start();
+	}
+
+	private void found(int find, long match, int length) {
+		// Selects a match, if this was the latest find.
+
+		if (find != finds) {
+			return;
+		}
+
+		finder = null;
+		setCursor(null);
+
+		if (match == -1) {
+			Toolkit.getDefaultToolkit().beep();
+		} else {
+			select(match, match + length);
+		}
+	}
+
+	public void mousePressed(MouseEvent me) {
+		requestFocus();
+
+		if (me.isPopupTrigger()) {
+			popup.show(this, me.getX(), me.getY());
+		} else if (SwingUtilities.isLeftMouseButton(me)) {
+			caret = offsetAt(me.getX(), me.getY());
+			if (!me.isShiftDown()) {
+				anchor = caret;
+			}
+			repaint();
+		}
+	}
+
+	public void mouseReleased(MouseEvent me) {
+		if (me.isPopupTrigger()) {
+			popup.show(this, me.getX(), me.getY());
+		}
+	}
+
+	public void mouseDragged(MouseEvent me) {
+		if (SwingUtilities.isLeftMouseButton(me)) {
+			caret = offsetAt(me.getX(), me.getY());
+			scrollRectToVisible(new Rectangle(me.getX(), me.getY(), 1, 1));
+			repaint();
+		}
+	}
+
+	public Dimension getPreferredScrollableViewportSize() {
+		return getPreferredSize();
+	}
+
+	public int getScrollableUnitIncrement(Rectangle visible, int orientation,
+						int direction) {
+		return (orientation == SwingConstants.VERTICAL) ? lineHeight :
+							metrics.charWidth(' ');
+	}
+
+	public int getScrollableBlockIncrement(Rectangle visible, int orientation,
+						int direction) {
+		return (orientation == SwingConstants.VERTICAL) ?
+				visible.height - lineHeight : visible.width / 2;
+	}
+
+	public boolean getScrollableTracksViewportWidth() {
+		return getParent().getWidth() > getPreferredSize().width;
+	}
+
+	public boolean getScrollableTracksViewportHeight() {
+		return getParent().getHeight() > getPreferredSize().height;
+	}
+
+	public void mouseClicked(MouseEvent me) {}
+	public void mouseEntered(MouseEvent me) {}
+	public void mouseExited(MouseEvent me) {}
+	public void mouseMoved(MouseEvent me) {}
+}
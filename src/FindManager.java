@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-09-16
-*	Modified: 2021-12-23
+*	Modified: 2026-10-18
 *
 *	Handles the components and algorithms associated with
 *	and find & replace functionality. Find functionality
@@ -19,6 +19,8 @@ import java.awt.event.KeyListener;
 
 import java.awt.Image;
 
+import java.util.Arrays;
+
 import javax.imageio.ImageIO;
 
 import javax.swing.GroupLayout;
@@ -212,28 +214,32 @@ public class FindManager implements ComponentListener, KeyListener {
 		
 		replaceAll.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent ae) {
-				int[] indexes = replaceFind.getIndexes();
+				int findStringLen = FindPanel.expand(replaceFind.getText()).length();
+				int[] indexes = withoutOverlaps(replaceFind.getIndexes(),
+								findStringLen);
 				
 				if (indexes.length > 0) {
-					int findStringLen = replaceFind.getText().length();
 					String replaceString = FindPanel.expand(replaceText.getText());
 					String[] oldStrings = new String[indexes.length];
 					
 					try {
-						// This is done backwards so that the indexes
-						// line up properly, even after some of them
-						// have been changed.
-						
-						for (int i = indexes.length - 1; i >= 0; i--) {
+						// Every match is replaced in as few edits as
+						// they can be, and only that text is relexed.
+						int[] lengths = new int[indexes.length];
+						String[] replaceStrings = new String[indexes.length];
+
+						for (int i = 0; i < indexes.length; i++) {
 							oldStrings[i] = doc.getText(indexes[i], findStringLen);
-							doc.remove(indexes[i], findStringLen);
-							doc.insertString(indexes[i], replaceString, null);
+							lengths[i] = findStringLen;
+							replaceStrings[i] = replaceString;
 						}
+
+						RangeList changed = ((SyntaxDocument) doc).replaceAll(indexes,
+								lengths, replaceStrings);
 						
 						editMgr.replaceAll(indexes, oldStrings, replaceString);
 
-						highlightMgr.recalculate();
-						highlightMgr.repaint();
+						highlightMgr.schedule(changed);
 					} catch (Exception e) {
 						ErrorMgr.show(e, "Error replacing all text.");
 					}
@@ -247,6 +253,21 @@ public class FindManager implements ComponentListener, KeyListener {
 		linefinder = new LineFinder(editor, parent);
 	}
 	
+	// Matches can overlap, like "aa" does twice in "aaa", so only the
+	// first of any that do is replaced.
+	private static int[] withoutOverlaps(int[] indexes, int length) {
+		int[] kept = new int[indexes.length];
+		int count = 0;
+
+		for (int i = 0; i < indexes.length; i++) {
+			if (count == 0 || indexes[i] >= kept[count - 1] + length) {
+				kept[count++] = indexes[i];
+			}
+		}
+
+		return Arrays.copyOf(kept, count);
+	}
+	
 	public void updateOptions() {
 		ignoreCase.setSelected(Defaults.IGNORE_CASE);
 	}
@@ -264,8 +285,7 @@ public class FindManager implements ComponentListener, KeyListener {
 			
 			text.replaceSelection(replaceString);
 
-			highlightMgr.recalculate();
-			highlightMgr.repaint(new Range(start, replaceString.length()));
+			highlightMgr.schedule(new Range(start, replaceString.length()));
 				
 			PCIE.getWindow().getTabbedPane().setActiveSaved(false);
 			PCIE.getWindow().getTabbedPane().getActiveComponent().recalculateLines();
@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B
 *	Created: 2021-12-21
-*	Modified: 2021-12-25
+*	Modified: 2026-10-18
 *
 *	Handles find functionality.
 */
@@ -16,8 +16,6 @@ import java.awt.event.FocusListener;
 import java.awt.event.FocusEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
 
 import java.util.ArrayList;
 
@@ -33,14 +31,14 @@ import javax.swing.JTextPane;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 
-import javax.swing.text.SimpleAttributeSet;
-import javax.swing.text.StyleConstants;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Highlighter;
 import javax.swing.text.StyledDocument;
 
 
 @SuppressWarnings("serial")
 public class FindPanel extends JPanel implements	KeyListener,
-							MouseListener,
+							EditListener,
 							Runnable
 {
 	private JTextField find;
@@ -52,8 +50,22 @@ public class FindPanel extends JPanel implements	KeyListener,
 	private FindManager mgr;
 	
 	private ArrayList<Integer> list = new ArrayList<Integer>();
-	private SimpleAttributeSet attr, reset;
+	private TextSearch search = null;
 	private int len;
+
+	// Set when the matches were found in text that was edited in the
+	// same turn, since the next batch then holds edits made before.
+	private boolean foundMidBatch = false;
+
+	// Where the caret was left by selecting a match, so that moving
+	// it anywhere else can take the match's number off of the count.
+	private int selected = -1;
+
+	// Matches are marked with the text pane's highlighter rather than
+	// the document's attributes, so that highlighting the syntax
+	// doesn't paint over them.
+	private Highlighter.HighlightPainter painter;
+	private ArrayList<Object> marks = new ArrayList<Object>();
 	
 	private boolean ignoreCase, active;
 	
@@ -92,14 +104,22 @@ public class FindPanel extends JPanel implements	KeyListener,
 				} else {
 					SwingUtilities.invokeLater(this);
 				}
-			} else {
-				SwingUtilities.invokeLater(this);
 			}
 		}
 	}
 	
-	public void mousePressed(MouseEvent me) {
-		setCountString(Integer.toString(list.size()));
+	public void editsMade(EditBatch batch) {
+		if (!active) {
+			return;
+		}
+
+		if (foundMidBatch) {
+			calculate();
+		} else if (batch.hasEdits()) {
+			update(batch.getDamage(), batch.getLengthChange());
+		} else if (batch.caretMoved() && batch.getNewCaret() != selected) {
+			setCountString(Integer.toString(list.size()));
+		}
 	}
 	
 	public void run() {
@@ -204,6 +224,7 @@ public class FindPanel extends JPanel implements	KeyListener,
 	private void select(int start) {
 		textPane.setCaretPosition(start);
 		textPane.moveCaretPosition(start + len);
+		selected = start + len;
 		
 		showSelection();
 	}
@@ -258,15 +279,13 @@ public class FindPanel extends JPanel implements	KeyListener,
 	
 	public void setTextPane(JTextPane tp) {
 		if (textPane != null) {
-			textPane.removeKeyListener(this);
-			textPane.removeMouseListener(this);
+			EditBus.get(textPane).removeEditListener(this);
 		}
 		
 		textPane = tp;
 		
 		if (textPane != null) {
-			textPane.addKeyListener(this);
-			textPane.addMouseListener(this);
+			EditBus.get(textPane).addEditListener(this);
 			doc = textPane.getStyledDocument();
 		} else {
 			doc = null;
@@ -280,20 +299,20 @@ public class FindPanel extends JPanel implements	KeyListener,
 	public void calculate() {
 		reset();
 		
-		String needle = expand(find.getText());
-		len = needle.length();
+		search = new TextSearch(expand(find.getText()), ignoreCase);
+		len = search.length();
 		list.clear();
+		foundMidBatch = EditBus.get(textPane).hasPendingEdits();
 		
 		if (len > 0) {
-			String haystack = getSafeText();
-			for (int i = 0; i < haystack.length() - len + 1; i++) {
-				if ((	ignoreCase &&
-					haystack.substring(i, i + len).equalsIgnoreCase(needle)) ||
-					(!ignoreCase && haystack.substring(i, i + len).equals(needle)))
-				{
-					list.add(i);
-					doc.setCharacterAttributes(i, len, attr, false);
+			try {
+				int[] found = search.findAll(doc);
+				for (int i = 0; i < found.length; i++) {
+					list.add(found[i]);
+					marks.add(mark(found[i], found[i] + len));
 				}
+			} catch (Exception e) {
+				ErrorMgr.show(e, "Error finding text.");
 			}
 		
 			setCountString(Integer.toString(list.size()));
@@ -301,21 +320,87 @@ public class FindPanel extends JPanel implements	KeyListener,
 			setCountString("0");
 		}
 	}
-	
-	private void reset() {
-		for (int i = 0; i < list.size(); i++) {
-			doc.setCharacterAttributes(list.get(i), len, reset, false);
+
+	private void update(Range damage, int lengthChange) {
+		// Only looks again where a match could overlap the damaged
+		// text. The matches before it are where they were, and the
+		// ones after it are moved along with the text.
+
+		if (len == 0) {
+			return;
+		}
+
+		int start = damage.getOffset();
+		int end = start + damage.getLength();
+		int oldEnd = end - lengthChange;
+
+		ArrayList<Integer> newList = new ArrayList<Integer>();
+		ArrayList<Object> newMarks = new ArrayList<Object>();
+		int i = 0;
+
+		while (i < list.size() && list.get(i) + len <= start) {
+			newList.add(list.get(i));
+			newMarks.add(marks.get(i));
+			i++;
 		}
+
+		while (i < list.size() && list.get(i) < oldEnd) {
+			textPane.getHighlighter().removeHighlight(marks.get(i));
+			i++;
+		}
+
+		try {
+			int[] found = search.findAll(doc, Math.max(0, start - len + 1),
+						Math.min(end + len - 1, doc.getLength()));
+
+			for (int j = 0; j < found.length; j++) {
+				newList.add(found[j]);
+				newMarks.add(mark(found[j], found[j] + len));
+			}
+		} catch (Exception e) {
+			ErrorMgr.show(e, "Error finding text.");
+		}
+
+		for (; i < list.size(); i++) {
+			int p = list.get(i) + lengthChange;
+			Object mark = marks.get(i);
+
+			// Marks at the very start of the document don't
+			// move when text is put in front of them.
+			if (((Highlighter.Highlight) mark).getStartOffset() != p) {
+				try {
+					textPane.getHighlighter().changeHighlight(mark, p, p + len);
+				} catch (Exception e) {
+					ErrorMgr.show(e, "Error moving found text.");
+				}
+			}
+
+			newList.add(p);
+			newMarks.add(mark);
+		}
+
+		list = newList;
+		marks = newMarks;
+
+		setCountString(Integer.toString(list.size()));
 	}
 	
-	private String getSafeText() {
+	private Object mark(int start, int end) {
 		try {
-			return doc.getText(0, doc.getLength());
+			return textPane.getHighlighter().addHighlight(start, end, painter);
 		} catch (Exception e) {
-			ErrorMgr.show(e, "Error getting text to find.");
+			ErrorMgr.show(e, "Error marking found text.");
 			return null;
 		}
 	}
+
+	private void reset() {
+		for (int i = 0; i < marks.size(); i++) {
+			textPane.getHighlighter().removeHighlight(marks.get(i));
+		}
+
+		marks.clear();
+	}
 	
 	private void createGUI() {
 		find = new JTextField();
@@ -381,14 +466,9 @@ public class FindPanel extends JPanel implements	KeyListener,
 	}
 	
 	private void generateStyles() {
-		attr = new SimpleAttributeSet();
-		reset = new SimpleAttributeSet();
-		
 		Color color = new Color(214, 101, 157, 100);
-		Color clear = new Color(0, 0, 0, 0);
 		
-		StyleConstants.setBackground(attr, color);
-		StyleConstants.setBackground(reset, clear);
+		painter = new DefaultHighlighter.DefaultHighlightPainter(color);
 	}
 	
 	public static String expand(String s) {
@@ -403,8 +483,4 @@ public class FindPanel extends JPanel implements	KeyListener,
 	
 	public void keyTyped(KeyEvent ke) {}
 	public void keyReleased(KeyEvent ke) {}
-	public void mouseEntered(MouseEvent me) {}
-	public void mouseExited(MouseEvent me) {}
-	public void mouseReleased(MouseEvent me) {}
-	public void mouseClicked(MouseEvent me) {}
 }
\ No newline at end of file
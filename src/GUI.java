@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-08-20
-*	Modified: 2021-12-30
+*	Modified: 2026-10-18
 *
 *	The main window for the PCIE editor.
 */
@@ -17,6 +17,7 @@ import javax.swing.JButton;
 import javax.swing.JSplitPane;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import java.awt.Desktop;
 
@@ -34,6 +35,8 @@ import java.net.URI;
 
 import java.util.ArrayList;
 
+import java.util.concurrent.Future;
+
 
 @SuppressWarnings("serial")
 public class GUI extends JFrame implements WindowListener {
@@ -46,6 +49,8 @@ public class GUI extends JFrame implements WindowListener {
 			private JMenuItem newTab = new JMenuItem("New Tab");
 			private JMenuItem closeTab = new JMenuItem("Close Tab");
 			private JMenuItem reopenTab = new JMenuItem("Reopen Tab");
+			private JMenuItem reopenPiece = new JMenuItem("Reopen With Piece Table");
+			private JMenuItem reopenGap = new JMenuItem("Reopen With Gap Buffer");
 		private JMenu edit = new JMenu("Edit");
 			private JMenuItem cut = new JMenuItem("Cut");
 			private JMenuItem copy = new JMenuItem("Copy");
@@ -129,6 +134,9 @@ public class GUI extends JFrame implements WindowListener {
 		fileMenu.add(newTab);
 		fileMenu.add(closeTab);
 		fileMenu.add(reopenTab);
+		fileMenu.addSeparator();
+		fileMenu.add(reopenPiece);
+		fileMenu.add(reopenGap);
 
 		edit.add(cut);
 		edit.add(copy);
@@ -214,6 +222,18 @@ public class GUI extends JFrame implements WindowListener {
 			}
 		});
 
+		reopenPiece.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ae) {
+				reopenActive(true);
+			}
+		});
+
+		reopenGap.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ae) {
+				reopenActive(false);
+			}
+		});
+
 		save.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent ae) {
 				save();
@@ -306,13 +326,24 @@ public class GUI extends JFrame implements WindowListener {
 				File file = tabs.getActiveComponent().getFile();
 
 				if (file == null) {
-					File dir = createTmp(tabs.getActiveTitle(),
+					final File dir = createTmp(tabs.getActiveTitle(),
 						tabs.getActiveComponent().getEditor());
 
-					Compiler.compile(dir, true);
+					SaveService.whenSaved(dir, new Runnable() {
+						public void run() {
+							Compiler.compile(dir, true);
+						}
+					});
 				} else if (isProcessingProject(file.getParentFile())) {
+					// Only the files in the sketch are waited for.
+					final File dir = file.getParentFile();
 					tabs.saveKnown();
-					Compiler.compile(file.getParentFile(), false);
+
+					SaveService.whenSaved(dir, new Runnable() {
+						public void run() {
+							Compiler.compile(dir, false);
+						}
+					});
 				} else {
 					projectError();
 				}
@@ -330,13 +361,23 @@ public class GUI extends JFrame implements WindowListener {
 				terminal.clear();
 
 				if (!tabs.getActiveComponent().hasFile()) {
-					File dir = createTmp(tabs.getActiveTitle(),
+					final File dir = createTmp(tabs.getActiveTitle(),
 						tabs.getActiveComponent().getEditor());
 
-					Compiler.exportDir(dir, true);
+					SaveService.whenSaved(dir, new Runnable() {
+						public void run() {
+							Compiler.exportDir(dir, true);
+						}
+					});
 				} else if (isProcessingProject(Defaults.CURRENT_DIRECTORY)) {
+					final File dir = Defaults.CURRENT_DIRECTORY;
 					tabs.saveKnown();
-					Compiler.exportDir(Defaults.CURRENT_DIRECTORY, false);
+
+					SaveService.whenSaved(dir, new Runnable() {
+						public void run() {
+							Compiler.exportDir(dir, false);
+						}
+					});
 				} else {
 					projectError();
 				}
@@ -348,13 +389,23 @@ public class GUI extends JFrame implements WindowListener {
 				terminal.clear();
 
 				if (!tabs.getActiveComponent().hasFile()) {
-					File dir = createTmp(tabs.getActiveTitle(),
+					final File dir = createTmp(tabs.getActiveTitle(),
 						tabs.getActiveComponent().getEditor());
 
-					Compiler.exportJar(dir, true);
+					SaveService.whenSaved(dir, new Runnable() {
+						public void run() {
+							Compiler.exportJar(dir, true);
+						}
+					});
 				} else if (isProcessingProject(Defaults.CURRENT_DIRECTORY)) {
+					final File dir = Defaults.CURRENT_DIRECTORY;
 					tabs.saveKnown();
-					Compiler.exportJar(Defaults.CURRENT_DIRECTORY, false);
+
+					SaveService.whenSaved(dir, new Runnable() {
+						public void run() {
+							Compiler.exportJar(dir, false);
+						}
+					});
 				} else {
 					projectError();
 				}
@@ -366,13 +417,23 @@ public class GUI extends JFrame implements WindowListener {
 				terminal.clear();
 
 				if (!tabs.getActiveComponent().hasFile()) {
-					File dir = createTmp(tabs.getActiveTitle(),
+					final File dir = createTmp(tabs.getActiveTitle(),
 						tabs.getActiveComponent().getEditor());
 
-					Compiler.exportJar(dir, true);
+					SaveService.whenSaved(dir, new Runnable() {
+						public void run() {
+							Compiler.exportJar(dir, true);
+						}
+					});
 				} else if (isProcessingProject(Defaults.CURRENT_DIRECTORY)) {
+					final File dir = Defaults.CURRENT_DIRECTORY;
 					tabs.saveKnown();
-					Compiler.exportExe(Defaults.CURRENT_DIRECTORY, false);
+
+					SaveService.whenSaved(dir, new Runnable() {
+						public void run() {
+							Compiler.exportExe(dir, false);
+						}
+					});
 				} else {
 					projectError();
 				}
@@ -436,26 +497,49 @@ public class GUI extends JFrame implements WindowListener {
 		return dir;
 	}
 	
-	// Returns true if the file was actually saved or false if it was not.
+	// Reopens the active tab with its text kept the way the user picked,
+	// a piece table being better for large files and a gap buffer for
+	// small ones, once it has been saved.
+	private void reopenActive(boolean pieceTable) {
+		int index = tabs.getPosition();
+
+		if (!tabs.getComponentAt(index).hasFile() || !tabs.getSaved(index)) {
+			JOptionPane.showMessageDialog(this,
+				"The file has to be saved before it can be reopened.");
+			return;
+		}
+
+		tabs.reopenActive(pieceTable);
+	}
+	
+	// Returns true if the file is being saved or false if it is not.
+	// The save carries on in the background.
 	public boolean save() {
 		return save(tabs.getPosition());
 	}
 	
 	public boolean save(int index) {
+		return startSave(index) != null;
+	}
+
+	private Future<Boolean> startSave(int index) {
 		if (tabs.getComponentAt(index).hasFile()) {
-			tabs.save(index);
-			return true;
+			return tabs.save(index);
 		} else {
-			return saveAs(index);
+			return startSaveAs(index);
 		}
 	}
 
-	// Returns true if the file was actually saved or false if not.
+	// Returns true if the file is being saved or false if not.
 	public boolean saveAs() {
 		return saveAs(tabs.getPosition());
 	}
 	
 	public boolean saveAs(int index) {
+		return startSaveAs(index) != null;
+	}
+
+	private Future<Boolean> startSaveAs(int index) {
 		JFileChooser chooser = new JFileChooser(Defaults.CURRENT_DIRECTORY);
 		chooser.setFileFilter(Defaults.FILE_FILTER);
 		File file = null;
@@ -497,12 +581,11 @@ public class GUI extends JFrame implements WindowListener {
 		}
 		
 		if (file == null) {
-			return false;
+			return null;
 		} else {
 			file = checkMakeDir(file);
-			tabs.saveAs(file);
 			Defaults.CURRENT_DIRECTORY = file.getParentFile();
-			return true;
+			return tabs.saveAs(index, file);
 		}
 	}
 
@@ -548,86 +631,188 @@ public class GUI extends JFrame implements WindowListener {
 	}
 	
 	// Closes the active tab, asking the user what to do if the file is unsaved(save, cancel, close).
-	// If the user clicks cancel, false is returned to indicate that furthur closing procedures
-	// should be halted(a.k.a. disposing of the window).
+	// If the user clicks cancel, false is returned. A tab being saved is closed once the save is
+	// written, and stays open if the save fails.
 	public boolean closeActiveTab() {
-		return closeTab(tabs.getPosition(), false);
+		return closeTab(tabs.getPosition());
 	}
 	
-	public boolean closeTab(int index, boolean onlyTest) {
-		if (tabs.getSaved(index)) {
-			tabs.removeFile(index);
-		} else if (!tabs.getSaved(index)) {
-			String[] options = {"Save", "Cancel", "Close Without Saving"};
-			int choice = JOptionPane.showOptionDialog(
-				this,							// Parent
-				"File \"" + tabs.getTitle(index) + "\" is not saved.",	// Message
-				"File Not Saved",					// Title
-				JOptionPane.DEFAULT_OPTION,				// Option type
-				JOptionPane.WARNING_MESSAGE,				// Style
-				null,							// Icon
-				options,						// Options
-				options[0]						// Default
-			);
-			
-			if (choice == 1) {
-				return false;
-			} else if (choice == 2) {
-				if (!onlyTest) {
-					tabs.removeFile(index);
-				}
-			} else {
-				if (save(index)) {
-					if (!onlyTest) {
-						tabs.removeFile(index);
-					}
-				} else {
-					return false;
-				}
+	public boolean closeTab(int index) {
+		final DocEditor editor = tabs.getComponentAt(index);
+		final ArrayList<DocEditor> discarded = new ArrayList<DocEditor>();
+		ArrayList<Future<Boolean>> saves = new ArrayList<Future<Boolean>>();
+
+		if (!askToClose(index, saves, discarded)) {
+			return false;
+		}
+
+		whenSaved(saves, new Runnable() {
+			public void run() {
+				removeClosed(editor, discarded);
 			}
+		});
+
+		return true;
+	}
+
+	private boolean askToClose(int index, ArrayList<Future<Boolean>> saves,
+						ArrayList<DocEditor> discarded) {
+		// Asks the user what to do with the tab if it is unsaved. A save
+		// that is started is added to saves, and a tab closed without
+		// saving to discarded. Returns false if the user cancels, or
+		// the save couldn't be started.
+
+		if (tabs.getSaved(index)) {
+			return true;
 		}
+
+		String[] options = {"Save", "Cancel", "Close Without Saving"};
+		int choice = JOptionPane.showOptionDialog(
+			this,							// Parent
+			"File \"" + tabs.getTitle(index) + "\" is not saved.",	// Message
+			"File Not Saved",					// Title
+			JOptionPane.DEFAULT_OPTION,				// Option type
+			JOptionPane.WARNING_MESSAGE,				// Style
+			null,							// Icon
+			options,						// Options
+			options[0]						// Default
+		);
 		
+		if (choice == 1 || choice == JOptionPane.CLOSED_OPTION) {
+			return false;
+		} else if (choice == 2) {
+			discarded.add(tabs.getComponentAt(index));
+			return true;
+		}
+
+		Future<Boolean> save = startSave(index);
+		if (save == null) {
+			return false;
+		}
+
+		saves.add(save);
+		return true;
+	}
+
+	private boolean removeClosed(DocEditor editor, ArrayList<DocEditor> discarded) {
+		// Removes editor's tab if it is saved, or the user closed it
+		// without saving. One edited again while it was being saved is
+		// left open. Returns whether it was removed.
+
+		int index = tabs.indexOf(editor);
+		if (index == -1) {
+			return true;
+		}
+
+		if (!tabs.getSaved(index) && !discarded.contains(editor)) {
+			return false;
+		}
+
+		tabs.removeFile(index);
 		return true;
 	}
 
+	private void whenSaved(final ArrayList<Future<Boolean>> saves, final Runnable then) {
+		// Runs then on the event thread once every save in saves has been
+		// written, waiting for them on a thread of its own so the window
+		// keeps working. If any fails, then isn't run, and the editor
+		// has already said why.
+
+		if (saves.size() == 0) {
+			then.run();
+			return;
+		}
+
+		new Thread(new Runnable() {
+			public void run() {
+				for (int i = 0; i < saves.size(); i++) {
+					try {
+						if (!saves.get(i).get()) {
+							return;
+						}
+					} catch (Exception e) {
+						// The save itself reports what went wrong.
+						return;
+					}
+				}
+
+				SwingUtilities.invokeLater(then);
+			}
+		}, "Save Waiter").start();
+	}
+
 	public TabbedPane getTabbedPane() {
 		return tabs;
 	}
 	
 	// Called when the user closes the window.
 	public void windowClosing(WindowEvent we) {
-		// Go through the open tabs and create a list of indexes of unsaved ones.
-		ArrayList<Integer> unsavedTabs = new ArrayList<Integer>();
-		
+		// Check with the user to see what they would like to to about each unsaved tab.
+		// If the user cancels, then the user should not be asked for any other files.
+		final ArrayList<DocEditor> discarded = new ArrayList<DocEditor>();
+		ArrayList<Future<Boolean>> saves = new ArrayList<Future<Boolean>>();
+
 		for (int i = 0; i < tabs.getTabCount(); i++) {
-			if (!tabs.getSaved(i)) {
-				unsavedTabs.add(i);
+			if (!askToClose(i, saves, discarded)) {
+				return;
 			}
 		}
 		
-		// Check with the user to see what they would like to to about each unsaved tab.
-		// If the user cancels, then the user should not be asked for any other files.
-		boolean canceled = false;
-		for (int i = 0; i < unsavedTabs.size(); i++) {
-			if (!closeTab(unsavedTabs.get(i), true)) {
-				canceled = true;
-				break;
+		// Close all the tabs for real once they are saved, and then close the window.
+		// A tab edited again while the saves were written keeps the window open.
+		whenSaved(saves, new Runnable() {
+			public void run() {
+				for (int i = tabs.getTabCount() - 1; i >= 0; i--) {
+					removeClosed(tabs.getComponentAt(i), discarded);
+				}
+
+				if (tabs.getTabCount() == 0) {
+					dispose();
+					
+					Defaults.writeDefaults();
+				}
 			}
+		});
+	}
+	
+	// Puts back the edits that weren't saved the last time the editor was
+	// closed, if it didn't close properly, and tells the user which files
+	// they were made to.
+	public void recoverJournals() {
+		ArrayList<EditJournal.Recovery> found = EditJournal.findUnsaved();
+		if (found.size() == 0) {
+			return;
 		}
-		
-		// Close all the tabs for real, assuming the user didn't cancel the close,
-		// and then close the window.
-		if (!canceled) {
-			while (tabs.getTabCount() > 0) {
-				tabs.removeFile(0);
+
+		String recovered = "", lost = "";
+		for (int i = 0; i < found.size(); i++) {
+			EditJournal.Recovery recovery = found.get(i);
+			String name = (recovery.getFile() == null) ? "A new tab" :
+						recovery.getFile().getPath();
+
+			// A journal that couldn't be put back is the only copy of
+			// its edits, so it is kept to try again next time.
+			if (tabs.recover(recovery)) {
+				recovered += "\n    " + name;
+			} else {
+				lost += "\n    " + name;
 			}
-			
-			dispose();
-			
-			Defaults.writeDefaults();
 		}
+
+		String message = "";
+		if (!recovered.isEmpty()) {
+			message += "Unsaved edits were recovered in:" + recovered;
+		}
+		if (!lost.isEmpty()) {
+			message += (message.isEmpty() ? "" : "\n\n") +
+				"Unsaved edits could not be recovered in:" + lost +
+				"\n\nThey were kept to try again the next time the editor starts.";
+		}
+
+		JOptionPane.showMessageDialog(this, message, "Recovered Edits",
+					JOptionPane.INFORMATION_MESSAGE);
 	}
-	
+
 	public void updateOptions() {
 		tabs.updateOptions();
 		terminal.updateOptions();
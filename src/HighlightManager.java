@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B
 *	Created: 2021-12-13
-*	Modified: 2021-12-29
+*	Modified: 2026-10-18
 *
 *	A third attempt at making a highlight manager that is both
 *	robust and fast.
@@ -9,92 +9,257 @@
 */
 
 
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
 import java.util.ArrayList;
 
-import javax.swing.text.SimpleAttributeSet;
-import javax.swing.text.StyleConstants;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.JEditorPane;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.Element;
+import javax.swing.text.JTextComponent;
 import javax.swing.text.StyledDocument;
 
 
-@SuppressWarnings({"unchecked","rawtypes"})
-public class HighlightManager {
+public class HighlightManager implements	DocumentListener,
+						LineListener,
+						ChangeListener,
+						ActionListener
+{
 	private StyledDocument doc;
 
-	private ArrayList[] lists = {
-		new ArrayList<Range>(),
-		new ArrayList<Range>(),
-		new ArrayList<Range>(),
-		new ArrayList<Range>()
-	};
-	private ArrayList[] oldLists = {
-		new ArrayList<Range>(),
-		new ArrayList<Range>(),
-		new ArrayList<Range>(),
-		new ArrayList<Range>()
+	private RangeList[] lists = {
+		new RangeList(),
+		new RangeList(),
+		new RangeList(),
+		new RangeList()
 	};
 
-	private SimpleAttributeSet[] styles = new SimpleAttributeSet[4];
+	// The lexer state at the start of every line, so that an edit only
+	// needs to be relexed from the line it damaged. Only multiline
+	// comments can carry over a newline; strings, characters and single
+	// line comments all end on one.
+	//
+	// The lines themselves are the document's LineIndex, which says when
+	// lines come and go. The states have a gap in them at the line last
+	// edited, like the LineIndex does, so an edit only moves the states
+	// between it and the last one.
+	private LineIndex lines;
+	private byte[] lineStates = new byte[64];
+	private int lineGapStart = 1, lineGapEnd = 64;
+
+	private static final byte	NORMAL = 0,
+					IN_COMMENT = 1;
+
+	private static final int	NORMAL_MODE = 0,
+					STRING_MODE = 1,
+					CHAR_MODE = 2,
+					SL_MODE = 3,
+					ML_MODE = 4;
+
+	// The text edited since the last recalculate(), or -1 if none.
+	private int dirtyStart = -1, dirtyEnd = -1;
+
+	// The text whose lexing changed since the last repaint.
+	private Range relexed = null;
+
+	// The document's text, read without copying. It is made again
+	// whenever it is needed after the document has changed.
+	private DocumentText text = null;
+
+	// The text that has been lexed but not painted yet. When lazy
+	// highlighting is on, only the text around what can be seen is
+	// painted straight away, and the rest is painted when it is scrolled
+	// to or when the idle timer gets to it.
+	private RangeList stale = new RangeList();
+	private JTextComponent view = null;
+	private Timer idle = new Timer(IDLE_INTERVAL, this);
+	private static final int	IDLE_DELAY = 500,
+					IDLE_INTERVAL = 20,
+					IDLE_CHUNK = 20000;
+
+	// Styles are worked out on a background thread, from a copy of the
+	// text taken when it was asked for. The version goes up with every
+	// edit, so that styles worked out for old text can be dropped.
+	private int version = 0;
+	private RangeList pending = new RangeList();
+	private ArrayList<Runnable> repaintListeners = new ArrayList<Runnable>();
+
+	// When the view is a SyntaxView, the styles are kept here as runs
+	// for it to paint, instead of being written into the document.
+	private boolean paintsRuns = false;
+	private RangeList runs = new RangeList();
+	private RangeList brackets = new RangeList();
+	private Color bracketColor = null;
+
+	// Edits are highlighted in batches, once a frame.
+	private HighlightScheduler scheduler = new HighlightScheduler(this);
+
+	private static final ExecutorService worker =
+		Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Highlighter");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+
+				return thread;
+			}
+		});
 
-	private static SimpleAttributeSet numAttr;
-	private static SimpleAttributeSet normAttr;
-	private static SimpleAttributeSet escapeAttr;
-	private static boolean stylesSet = false;
+	// The keywords and styles shared by every tab.
+	private LanguageProfile profile = LanguageProfile.get();
 
 	private static final int 	STRING = 0,
 					SL_COMMENT = 1,
 					ML_COMMENT = 2,
 					CHAR = 3;
 
-	private Attribute[] attrs = new Attribute[11];
-	private static final int	ACCESS = 0,
-					CLASS = 10,
-					COMPOSITE = 2,
-					DEFINABLE = 7,
-					FLOW = 4,
-					IMPORT = 5,
-					OBJECT = 6,
-					PREDEFINED = 3,
-					PRIMITIVE = 8,
-					TFN = 9,
-					VARS = 1;
+	// The styles a token can have. Keywords use their category,
+	// and the four lists come after numbers in the same order.
+	private static final int	NUM_STYLE = LanguageProfile.NUM_STYLE,
+					LIST_STYLE = LanguageProfile.LIST_STYLE,
+					ESCAPE_STYLE = LanguageProfile.ESCAPE_STYLE;
+
+	private static final boolean[] WORD_CHARS = generateWordChars();
+
+	// The states isNumber() goes through while reading a number.
+	// The _GAP states are after an underscore between digits.
+	private static final int	START = 0,
+					SIGN = 1,
+					ZERO = 2,
+					INT = 3,
+					INT_GAP = 4,
+					DOT = 5,
+					POINT = 6,
+					FRACTION = 7,
+					FRACTION_GAP = 8,
+					EXP = 9,
+					EXP_SIGN = 10,
+					EXP_DIGITS = 11,
+					EXP_GAP = 12,
+					HEX_PREFIX = 13,
+					HEX = 14,
+					HEX_GAP = 15,
+					BIN_PREFIX = 16,
+					BIN = 17,
+					BIN_GAP = 18,
+					COLOR = 19,
+					SUFFIX = 20,
+					REJECT = 21;
 
 	public HighlightManager() {
 		this(null);
 	}
 
 	public HighlightManager(StyledDocument doc) {
-		if (!stylesSet) {
-			generateStyles();
+		idle.setInitialDelay(IDLE_DELAY);
+		setStyledDocument(doc);
+	}
+
+	public void setViewport(JViewport viewport, JTextComponent view) {
+		// Turns on lazy highlighting for the document shown by view,
+		// painting more of it as viewport is scrolled.
+
+		this.view = view;
+		viewport.addChangeListener(this);
+
+		paintsRuns = view instanceof JEditorPane &&
+			((JEditorPane) view).getEditorKit() instanceof SyntaxKit;
+	}
+
+	public boolean paintsRuns() {
+		return paintsRuns;
+	}
+
+	public RangeList getRuns() {
+		// Returns the styled runs of text, each one's value
+		// being the style it is painted in.
+
+		return runs;
+	}
+
+	public RangeList getBrackets() {
+		return brackets;
+	}
+
+	public Color getBracketColor() {
+		return bracketColor;
+	}
+
+	public void setBracketMatch(int open, int close, Color color) {
+		// Paints the brackets at open and close in color, over the
+		// highlighting. Either being -1 clears the match.
+
+		repaintBrackets();
+		brackets.clear();
+		bracketColor = color;
+
+		if (open != -1 && close != -1) {
+			brackets.add(Math.min(open, close), Math.min(open, close) + 1);
+			brackets.add(Math.max(open, close), Math.max(open, close) + 1);
 		}
 
-		setStyledDocument(doc);
+		repaintBrackets();
+	}
+
+	private void repaintBrackets() {
+		for (int i = 0; i < brackets.size(); i++) {
+			repaintView(brackets.getStart(i), brackets.getEnd(i));
+		}
+	}
+
+	private void repaintView(int start, int end) {
+		// Asks the view to repaint the lines from start to end.
+
+		try {
+			Rectangle a = view.modelToView2D(start).getBounds();
+			Rectangle b = view.modelToView2D(
+				Math.min(end, doc.getLength())).getBounds();
+
+			view.repaint(0, a.y, view.getWidth(), b.y + b.height - a.y);
+		} catch (Exception e) {
+			view.repaint();
+		}
 	}
 	
 	public void updateOptions() {
-		attrs[ACCESS].updateOptions(Defaults.ACCESS, Defaults.ACCESS_B);
-		attrs[CLASS].updateOptions(Defaults.CLASS, Defaults.CLASS_B);
-		attrs[COMPOSITE].updateOptions(Defaults.COMPOSITE,
-							Defaults.COMPOSITE_B);
-		attrs[DEFINABLE].updateOptions(Defaults.DEFINABLE,
-							Defaults.DEFINABLE_B);
-		attrs[FLOW].updateOptions(Defaults.FLOW, Defaults.FLOW_B);
-		attrs[IMPORT].updateOptions(Defaults.IMPORT, Defaults.IMPORT_B);
-		attrs[OBJECT].updateOptions(Defaults.OBJECT, Defaults.OBJECT_B);
-		attrs[PREDEFINED].updateOptions(Defaults.PREDEFINED,
-							Defaults.PREDEFINED_B);
-		attrs[PRIMITIVE].updateOptions(Defaults.PRIMITIVE,
-							Defaults.PRIMITIVE_B);
-		attrs[TFN].updateOptions(Defaults.TFN, Defaults.TFN_B);
-		attrs[VARS].updateOptions(Defaults.VARS, Defaults.VARS_B);
-		
-		generateStyles();
-		
+		// The settings that changed are in a new profile by now.
+		profile = LanguageProfile.get();
+
 		if (Defaults.HIGHLIGHT) {
+			recalculate();
 			repaint(new Range(0, doc.getLength()));
 		} else {
+			discardPending();
+			stale.clear();
+			idle.stop();
+
+			if (paintsRuns) {
+				runs.clear();
+				view.repaint();
+				return;
+			}
+
 			try {
 				doc.setCharacterAttributes(0, doc.getLength(),
-								normAttr, true);
+								profile.getNormalStyle(), true);
 			} catch (Exception e) {
 				ErrorMgr.show(e,
 					"Error clearing document highlighting");
@@ -103,10 +268,45 @@ public class HighlightManager {
 	}
 
 	public void setStyledDocument(StyledDocument i) {
+		if (doc != null) {
+			doc.removeDocumentListener(this);
+			doc.putProperty(HighlightManager.class, null);
+			lines.removeLineListener(this);
+		}
+
 		doc = i;
+		text = null;
+
+		for (int j = 0; j < lists.length; j++) {
+			lists[j].clear();
+		}
+
+		discardPending();
+		scheduler.cancel();
+		stale.clear();
+		runs.clear();
+		brackets.clear();
+		lineGapStart = 1;
+		lineGapEnd = lineStates.length;
+		lineStates[0] = NORMAL;
+		dirtyStart = -1;
+		relexed = null;
 
 		if (doc != null) {
-			generateAttributes();
+			profile = LanguageProfile.get();
+
+			// The document may already have lines, which all start
+			// out in the normal state until they are lexed.
+			lines = LineIndex.get(doc);
+			lines.addLineListener(this);
+			linesInserted(1, lines.getLineCount() - 1);
+
+			// Register the current text as one insert, so that it
+			// is all lexed by the next recalculate().
+			doc.addDocumentListener(this);
+			doc.putProperty(HighlightManager.class, this);
+			insertUpdate(0, doc.getLength());
+
 			recalculate();
 			repaint();
 		}
@@ -116,315 +316,511 @@ public class HighlightManager {
 		return doc;
 	}
 
-	private void generateAttributes() {
-		Attribute access = new Attribute(	doc,
-							Defaults.ACCESS_L,
-							Defaults.ACCESS,
-							Defaults.ACCESS_B,
-							false,
-							true);
-
-		Attribute classes = new Attribute(	doc,
-							Defaults.CLASS_L,
-							Defaults.CLASS,
-							Defaults.CLASS_B,
-							false,
-							true);
-
-		Attribute composite = new Attribute(	doc,
-							Defaults.COMPOSITE_L,
-							Defaults.COMPOSITE,
-							Defaults.COMPOSITE_B,
-							false,
-							false);
-
-		Attribute definable = new Attribute(	doc,
-							Defaults.DEFINABLE_L,
-							Defaults.DEFINABLE,
-							Defaults.DEFINABLE_B,
-							true,
-							true);
-
-		Attribute flow = new Attribute(		doc,
-							Defaults.FLOW_L,
-							Defaults.FLOW,
-							Defaults.FLOW_B,
-							false,
-							false);
-
-		Attribute imports = new Attribute(	doc,
-							Defaults.IMPORT_L,
-							Defaults.IMPORT,
-							Defaults.IMPORT_B,
-							false,
-							true);
-
-		Attribute object = new Attribute(	doc,
-							Defaults.OBJECT_L,
-							Defaults.OBJECT,
-							Defaults.OBJECT_B,
-							false,
-							true);
-
-		Attribute predefined = new Attribute(	doc,
-							Defaults.PREDEFINED_L,
-							Defaults.PREDEFINED,
-							Defaults.PREDEFINED_B,
-							true,
-							false);
-
-		Attribute primitive = new Attribute(	doc,
-							Defaults.PRIMITIVE_L,
-							Defaults.PRIMITIVE,
-							Defaults.PRIMITIVE_B,
-							false,
-							false);
-
-		Attribute tfn = new Attribute(		doc,
-							Defaults.TFN_L,
-							Defaults.TFN,
-							Defaults.TFN_B,
-							false,
-							false);
-
-		Attribute vars = new Attribute(		doc,
-							Defaults.VARS_L,
-							Defaults.VARS,
-							Defaults.VARS_B,
-							false,
-							false);
-
-		attrs[ACCESS] = access;
-		attrs[CLASS] = classes;
-		attrs[COMPOSITE] = composite;
-		attrs[DEFINABLE] = definable;
-		attrs[FLOW] = flow;
-		attrs[IMPORT] = imports;
-		attrs[OBJECT] = object;
-		attrs[PREDEFINED] = predefined;
-		attrs[PRIMITIVE] = primitive;
-		attrs[TFN] = tfn;
-		attrs[VARS] = vars;
-	}
-
-	private void generateStyles() {
-		styles[STRING] = new SimpleAttributeSet();
-		styles[SL_COMMENT] = new SimpleAttributeSet();
-		styles[CHAR] = new SimpleAttributeSet();
-		numAttr = new SimpleAttributeSet();
-		normAttr = new SimpleAttributeSet();
-		escapeAttr = new SimpleAttributeSet();
-
-		StyleConstants.setForeground(styles[STRING], Defaults.STRING);
-		StyleConstants.setForeground(styles[SL_COMMENT],
-							Defaults.COMMENT);
-		StyleConstants.setForeground(styles[CHAR], Defaults.CHAR);
-		StyleConstants.setForeground(numAttr, Defaults.NUM);
-		StyleConstants.setForeground(
-					normAttr, Defaults.EDITOR_FONT_COLOR);
-		StyleConstants.setForeground(escapeAttr, Defaults.ESCAPE);
-
-		StyleConstants.setBold(styles[STRING], Defaults.STRING_B);
-		StyleConstants.setBold(styles[SL_COMMENT], Defaults.COMMENT_B);
-		StyleConstants.setBold(styles[CHAR], Defaults.CHAR_B);
-		StyleConstants.setBold(numAttr, Defaults.NUM_B);
-		StyleConstants.setBold(escapeAttr, Defaults.ESCAPE_B);
-		// Normal text cannot be bolded.
-
-		// Intentional reference duplication.
-		styles[ML_COMMENT] = styles[SL_COMMENT];
-	}
-
 	public void recalculate() {
-		if (!Defaults.HIGHLIGHT) {
+		if (!Defaults.HIGHLIGHT || dirtyStart == -1) {
 			return;
 		}
 		
-		// Recalculates the indexes of the strings, comments, and chars.
-
-		backupComments();
-		String s = getSafeText();
+		// Relexes the strings, comments, and chars starting at the first
+		// line that was edited. Lexing stops at the first line past the
+		// edit that starts in the same state it did before, because
+		// everything from there on lexes exactly as it did last time.
+
+		int len = doc.getLength();
+		int line = lineOf(dirtyStart);
+		int start = lineStart(line);
+		text = null;
+
+		RangeList[] fresh = {
+			new RangeList(),
+			new RangeList(),
+			new RangeList(),
+			new RangeList()
+		};
+
+		// The multiline comment that the first line starts inside of,
+		// if any. It gets rebuilt with the rest of the relexed ranges.
+		int open = -1;
+
+		int mode = NORMAL_MODE;
+		int tokenStart = -1;
+		boolean negateNext = false;
+
+		if (lineState(line) == IN_COMMENT) {
+			open = lists[ML_COMMENT].firstAtOrAfter(start) - 1;
+			mode = ML_MODE;
+			tokenStart = (open == -1) ? start :
+					lists[ML_COMMENT].getStart(open);
+		}
 
-		int i = 0, len = s.length();
+		int stop = -1;
+		int joined = -1;
 		char a, b;
-		while (i < len) {
-			a = s.charAt(i);
-			b = getSafeChar(s, i + 1);
-
-			if (a == '"') {
-				// String found.
-				int start = i;
-				boolean negateNext = false, terminated = false;
 
-				i++;
-
-				while (i < len) {
-					a = s.charAt(i);
-
-					if (a == '\n') {
-						break;
-					} else if (a == '\\' && !negateNext) {
-						negateNext = true;
-					} else if (a == '"' && !negateNext) {
-						terminated = true;
-						break;
-					} else {
-						negateNext = false;
+		int i = start;
+		while (i < len && stop == -1) {
+			a = charAt(i);
+
+			if (mode == NORMAL_MODE) {
+				b = charAt(i + 1);
+
+				if (a == '"') {
+					// String found.
+					mode = STRING_MODE;
+					tokenStart = i;
+					negateNext = false;
+				} else if (a == '\'') {
+					// Character found.
+					mode = CHAR_MODE;
+					tokenStart = i;
+					negateNext = false;
+				} else if (a == '/' && b == '/') {
+					// Single line comment found.
+					mode = SL_MODE;
+					tokenStart = i;
+					i++;
+				} else if (a == '/' && b == '*') {
+					// Multiline comment found.
+					mode = ML_MODE;
+					tokenStart = i;
+					i++;
+				}
+			} else if (mode == STRING_MODE) {
+				if (a == '\n') {
+					fresh[STRING].add(tokenStart, i + 1);
+					mode = NORMAL_MODE;
+				} else if (a == '\\' && !negateNext) {
+					negateNext = true;
+				} else if (a == '"' && !negateNext) {
+					fresh[STRING].add(tokenStart, i + 1);
+					mode = NORMAL_MODE;
+				} else {
+					negateNext = false;
+				}
+			} else if (mode == CHAR_MODE) {
+				if (a == '\n') {
+					mode = NORMAL_MODE;
+				} else if (a == '\\' && !negateNext) {
+					negateNext = true;
+				} else if (a == '\'' && !negateNext) {
+					if (isChar(tokenStart, i)) {
+						fresh[CHAR].add(tokenStart, i + 1);
 					}
 
+					mode = NORMAL_MODE;
+				} else {
+					negateNext = false;
+				}
+			} else if (mode == SL_MODE) {
+				if (a == '\n') {
+					fresh[SL_COMMENT].add(tokenStart, i + 1);
+					mode = NORMAL_MODE;
+				}
+			} else if (mode == ML_MODE) {
+				if (a == '*' && charAt(i + 1) == '/') {
 					i++;
+					fresh[ML_COMMENT].add(tokenStart, i + 1);
+					mode = NORMAL_MODE;
 				}
+			}
 
-				int length = i - start + 1;
-				lists[STRING].add(new Range(start, length));
-			} else if (a == '\'') {
-				// Character found.
-
-				int start = i;
-				boolean negateNext = false, terminated = false;
+			i++;
 
-				i++;
+			if (a == '\n') {
+				// A new line starts at i. If it starts past the
+				// edit, and in the state it did last time, then
+				// the rest of the document is still lexed right.
 
-				while (i < len) {
-					a = s.charAt(i);
+				line++;
+				byte state = (mode == ML_MODE) ? IN_COMMENT : NORMAL;
 
-					if (a == '\n') {
-						break;
-					} else if (a == '\\' && !negateNext) {
-						negateNext = true;
-					} else if (a == '\'' && !negateNext) {
-						terminated = true;
-						break;
+				if (i > dirtyEnd && lineState(line) == state) {
+					if (state == NORMAL) {
+						stop = i;
 					} else {
-						negateNext = false;
-					}
+						joined = lists[ML_COMMENT]
+							.firstAtOrAfter(i) - 1;
 
-					i++;
+						if (joined != -1 && lists[ML_COMMENT]
+								.getEnd(joined) > i) {
+							stop = i;
+						}
+					}
 				}
 
-				if (	terminated &&
-					isChar(s.substring(start, i + 1)))
-				{
-					lists[CHAR].add(new Range(
-							start, i - start + 1));
-				}
-			} else if (a == '/' && b == '/') {
-				// Single line comment found.
+				setLineState(line, state);
+			}
+		}
 
-				int start = i;
+		if (stop == -1) {
+			// The end of the document was reached, so anything left
+			// open runs off the end of it.
 
-				i += 2;
+			if (mode == STRING_MODE) {
+				fresh[STRING].add(tokenStart, len + 1);
+			} else if (mode == SL_MODE) {
+				fresh[SL_COMMENT].add(tokenStart, len + 1);
+			} else if (mode == ML_MODE) {
+				fresh[ML_COMMENT].add(tokenStart, len + 1);
+			}
 
-				while (i < len) {
-					a = s.charAt(i);
+			stop = Integer.MAX_VALUE;
+		} else if (mode == ML_MODE) {
+			// Stopped inside a comment, which ends where the comment
+			// that was there before ends.
 
-					if (a == '\n') {
-						break;
-					}
+			// The comment it joins starts before stop, so it is
+			// replaced along with the rest of the relexed ranges.
+			fresh[ML_COMMENT].add(tokenStart,
+					lists[ML_COMMENT].getEnd(joined));
+		}
 
-					i++;
-				}
+		// Remember what was relexed, so that it gets repainted.
+		int end = Math.min(stop, len);
+		if (open != -1) {
+			start = Math.min(start, lists[ML_COMMENT].getStart(open));
+		}
 
-				int length = i - start + 1;
-				
-				lists[SL_COMMENT].add(new Range(start, length));
-			} else if (a == '/' && b == '*') {
-				// Multiline comment found.
+		for (int j = 0; j < lists.length; j++) {
+			RangeList list = lists[j];
+			int from = list.firstAtOrAfter(start);
+			int to = list.firstAtOrAfter(stop);
 
-				int start = i;
-				boolean terminated = false;
+			list.replace(from, to, fresh[j]);
+		}
 
-				i += 2;
+		if (relexed == null) {
+			relexed = new Range(start, end - start);
+		} else {
+			int relexedEnd = Math.max(relexed.getEnd(), end - 1);
+			relexed.setOffset(Math.min(relexed.getOffset(), start));
+			relexed.setEnd(relexedEnd);
+		}
 
-				while (i + 1 < len) {
-					a = s.charAt(i);
-					b = s.charAt(i + 1);
+		dirtyStart = -1;
+		dirtyEnd = -1;
+	}
 
-					if (a == '*' && b == '/') {
-						terminated = true;
-						break;
-					}
+	public void insertUpdate(DocumentEvent e) {
+		insertUpdate(e.getOffset(), e.getLength());
+	}
 
-					i++;
-				}
+	private void insertUpdate(int offset, int length) {
+		// Keeps the ranges lined up with the text, and marks the
+		// inserted text as needing to be relexed.
+
+		for (int i = 0; i < lists.length; i++) {
+			lists[i].insertUpdate(offset, length);
+		}
+
+		discardPending();
+		scheduler.insertUpdate(offset, length);
+		stale.insertUpdate(offset, length);
+		runs.insertUpdate(offset, length);
+		brackets.insertUpdate(offset, length);
+
+		text = null;
 
-				int length = i - start + 2;
-				lists[ML_COMMENT].add(new Range(start, length));
+		if (dirtyStart == -1) {
+			dirtyStart = offset;
+			dirtyEnd = offset + length;
+		} else {
+			if (dirtyEnd >= offset) {
+				dirtyEnd += length;
 			}
 
-			i++;
+			dirtyStart = Math.min(dirtyStart, offset);
+			dirtyEnd = Math.max(dirtyEnd, offset + length);
 		}
 	}
 
-	private void backupComments() {
+	public void removeUpdate(DocumentEvent e) {
+		int offset = e.getOffset(), length = e.getLength();
+		text = null;
+
 		for (int i = 0; i < lists.length; i++) {
-			oldLists[i] = lists[i];
-			lists[i] = new ArrayList<Range>();
+			lists[i].removeUpdate(offset, length);
+		}
+
+		discardPending();
+		scheduler.removeUpdate(offset, length);
+		stale.removeUpdate(offset, length);
+		runs.removeUpdate(offset, length);
+		brackets.removeUpdate(offset, length);
+
+		if (dirtyStart == -1) {
+			dirtyStart = offset;
+			dirtyEnd = offset;
+		} else {
+			dirtyStart = Math.min(afterRemove(dirtyStart, offset, length),
+									offset);
+			dirtyEnd = Math.max(afterRemove(dirtyEnd, offset, length),
+									offset);
 		}
 	}
 
-	private String getSafeText() {
-		return getSafeText(new Range(0, doc.getLength()));
+	public void changedUpdate(DocumentEvent e) {
+		// Attribute changes don't affect lexing.
 	}
 
-	private String getSafeText(Range r) {
-		try {
-			return doc.getText(r.getOffset(), r.getLength());
-		} catch (Exception e) {
-			ErrorMgr.show(e, "Error while getting text to color.");
-			return null;
+	private int afterRemove(int index, int offset, int length) {
+		// Returns where index ends up once length characters
+		// at offset are removed.
+
+		if (index <= offset) {
+			return index;
 		}
+
+		return Math.max(offset, index - length);
 	}
 
-	private char getSafeChar(String s, int i) {
-		try {
-			return s.charAt(i);
-		} catch (IndexOutOfBoundsException e) {
-			return '\0';
+	public void linesInserted(int line, int count) {
+		// The new lines start out normal, and get their states when
+		// they are relexed.
+
+		moveLineGap(line);
+
+		if (lineGapEnd - lineGapStart < count) {
+			int after = lineStates.length - lineGapEnd;
+			int size = lineStates.length * 2;
+			while (size - after - lineGapStart < count) {
+				size *= 2;
+			}
+
+			byte[] states = new byte[size];
+			System.arraycopy(lineStates, 0, states, 0, lineGapStart);
+			System.arraycopy(lineStates, lineGapEnd, states, size - after, after);
+
+			lineGapEnd = size - after;
+			lineStates = states;
+		}
+
+		for (int i = 0; i < count; i++) {
+			lineStates[lineGapStart++] = NORMAL;
 		}
 	}
 
-	private boolean isChar(String s) {
-		// Returns true if the given string is an example of a
-		// character that should be highlighted. It is assumed that
-		// the string starts and ends with single quotes.
+	public void linesRemoved(int line, int count) {
+		moveLineGap(line);
+		lineGapEnd += count;
+	}
 
-		if (s.length() == 3) {
-			return true;
-		} else if (s.length() == 4) {
-			if (s.charAt(1) == '\\') {
-				return true;
-			}
+	private int lineCount() {
+		return lines.getLineCount();
+	}
 
-			return false;
-		} else if (s.length() == 8) {
-			if (	s.charAt(1) == '\\' &&
-				s.charAt(2) == 'u' &&
-				onlyContainsHex(s.substring(3, 7)))
-			{
-				return true;
-			}
+	private int lineStart(int line) {
+		return lines.getLineStart(line);
+	}
+
+	private int lineOf(int offset) {
+		return lines.getLineOf(offset);
+	}
+
+	private byte lineState(int line) {
+		return (line < lineGapStart) ? lineStates[line] :
+			lineStates[line + lineGapEnd - lineGapStart];
+	}
+
+	private void setLineState(int line, byte state) {
+		if (line < lineGapStart) {
+			lineStates[line] = state;
+		} else {
+			lineStates[line + lineGapEnd - lineGapStart] = state;
 		}
+	}
 
-		return false;
+	private void moveLineGap(int line) {
+		// Moves the gap to just before line.
+
+		while (lineGapStart > line) {
+			lineGapStart--;
+			lineGapEnd--;
+			lineStates[lineGapEnd] = lineStates[lineGapStart];
+		}
+
+		while (lineGapStart < line) {
+			lineStates[lineGapStart] = lineStates[lineGapEnd];
+			lineGapStart++;
+			lineGapEnd++;
+		}
 	}
 
-	private boolean onlyContainsHex(String s) {
-		for (int i = 0; i < s.length(); i++) {
-			if (!isHex(s.charAt(i))) {
+	private char charAt(int i) {
+		// Returns the character at i, or '\0' past the end of the
+		// document.
+
+		if (text == null) {
+			text = new DocumentText(doc);
+		}
+
+		return (i < text.length()) ? text.charAt(i) : '\0';
+	}
+
+	private boolean isChar(int start, int end) {
+		// Returns true if the text from start to end(inclusive) is
+		// an example of a character that should be highlighted. It is
+		// assumed that the text starts and ends with single quotes.
+
+		int length = end - start + 1;
+
+		if (length == 3) {
+			return true;
+		} else if (length == 4) {
+			return charAt(start + 1) == '\\';
+		} else if (length == 8) {
+			if (charAt(start + 1) != '\\' || charAt(start + 2) != 'u') {
 				return false;
 			}
+
+			for (int i = start + 3; i < start + 7; i++) {
+				if (!isHex(charAt(i))) {
+					return false;
+				}
+			}
+
+			return true;
 		}
 
-		return true;
+		return false;
 	}
 
-	private boolean isHex(char c) {
+	private static boolean isHex(char c) {
 		return	(c >= 'a' && c <= 'f') ||
 			(c >= 'A' && c <= 'F') ||
 			(c >= '0' && c <= '9');
 	}
 
+	public void schedule() {
+		schedule(new Range(0, doc.getLength()));
+	}
+
+	public void schedule(Range range) {
+		// Relexes and repaints range along with everything else edited
+		// since the last pass, once the current batch of edits is done.
+
+		if (Defaults.HIGHLIGHT) {
+			scheduler.post(range);
+		}
+	}
+
+	public void schedule(RangeList ranges) {
+		// Schedules each of ranges, such as the groups of text that
+		// a replace all changed, without the text between them.
+
+		for (int i = 0; i < ranges.size(); i++) {
+			schedule(ranges.get(i));
+		}
+	}
+
+	public HighlightScheduler getScheduler() {
+		return scheduler;
+	}
+
+	public int[][] getTokens() {
+		// Returns the lexed lists, followed by the bounds and the styles
+		// of the painted runs, for the token cache. Returns null if any
+		// of the text hasn't been painted since it was last edited.
+
+		if (	!paintsRuns || !Defaults.HIGHLIGHT || dirtyStart != -1 ||
+			relexed != null || stale.size() > 0 ||
+			pending.size() > 0 || scheduler.isPending())
+		{
+			return null;
+		}
+
+		int[][] tokens = new int[lists.length + 2][];
+
+		for (int i = 0; i < lists.length; i++) {
+			tokens[i] = new int[lists[i].size() * 2];
+
+			for (int j = 0; j < lists[i].size(); j++) {
+				tokens[i][j * 2] = lists[i].getStart(j);
+				tokens[i][j * 2 + 1] = lists[i].getEnd(j);
+			}
+		}
+
+		int[] bounds = new int[runs.size() * 2];
+		int[] values = new int[runs.size()];
+
+		for (int i = 0; i < runs.size(); i++) {
+			bounds[i * 2] = runs.getStart(i);
+			bounds[i * 2 + 1] = runs.getEnd(i);
+			values[i] = runs.getValue(i);
+		}
+
+		tokens[lists.length] = bounds;
+		tokens[lists.length + 1] = values;
+
+		return tokens;
+	}
+
+	public boolean setTokens(int[][] tokens) {
+		// Uses tokens from getTokens() for the whole document instead of
+		// lexing and painting it, returning false if they can't be used.
+		// The text is still painted again lazily in the background, which
+		// puts right anything that the cache got wrong.
+
+		if (	!paintsRuns || !Defaults.HIGHLIGHT || tokens == null ||
+			tokens.length != lists.length + 2 ||
+			tokens[lists.length].length !=
+				tokens[lists.length + 1].length * 2)
+		{
+			return false;
+		}
+
+		int len = doc.getLength();
+
+		for (int i = 0; i <= lists.length; i++) {
+			int[] bounds = tokens[i];
+
+			if (	bounds.length % 2 != 0 ||
+				(bounds.length > 0 && bounds[bounds.length - 1] > len + 1))
+			{
+				return false;
+			}
+		}
+
+		for (int i = 0; i < lists.length; i++) {
+			lists[i].clear();
+
+			for (int j = 0; j < tokens[i].length; j += 2) {
+				lists[i].add(tokens[i][j], tokens[i][j + 1]);
+			}
+		}
+
+		// A line starts inside of a comment when there is a multiline
+		// comment that starts before the line and ends after it starts.
+		RangeList comments = lists[ML_COMMENT];
+		for (int i = 0; i < lineCount(); i++) {
+			int j = comments.indexContaining(lineStart(i));
+
+			setLineState(i, (j != -1 && comments.getStart(j) < lineStart(i))
+							? IN_COMMENT : NORMAL);
+		}
+
+		runs.clear();
+		int[] bounds = tokens[lists.length];
+		int[] values = tokens[lists.length + 1];
+
+		for (int i = 0; i < values.length; i++) {
+			runs.add(bounds[i * 2], bounds[i * 2 + 1], values[i]);
+		}
+
+		discardPending();
+		scheduler.cancel();
+		dirtyStart = -1;
+		dirtyEnd = -1;
+		relexed = null;
+
+		stale.clear();
+		stale.union(0, len);
+		idle.restart();
+		view.repaint();
+
+		return true;
+	}
+
 	public void repaint() {
 		repaint(new Range(0, doc.getLength()));
 	}
@@ -439,329 +835,612 @@ public class HighlightManager {
 
 		expand(range);
 
-		String text = getSafeText(range);
-		if (text.contains("/*") || text.contains("*/")) {
-			range.setEnd(findRejoin(lists,oldLists,range.getEnd()));
+		if (relexed != null) {
+			// Lexing that changed outside of the range, such as from
+			// opening or closing a multiline comment, needs painting too.
+			int end = Math.max(range.getEnd(), relexed.getEnd());
+			range.setOffset(Math.min(range.getOffset(), relexed.getOffset()));
+			range.setEnd(end);
+			relexed = null;
 		}
 
-		try {
-			doc.setCharacterAttributes(	range.getOffset(),
-							range.getLength(),
-							normAttr,
-							true);
-
-			for (int i = 0; i < attrs.length; i++) {
-				attrs[i].highlight(range);
+		if (Defaults.LAZY_HIGHLIGHT && view != null) {
+			if (range.getLength() > 0) {
+				stale.union(range.getOffset(), range.getEnd() + 1);
 			}
 
-			repaintNumbers(range);
-
-			for (int i = 0; i < styles.length; i++) {
-				repaintList(lists[i], range, styles[i]);
-			}
-		} catch (Exception e) {
-			ErrorMgr.show(e, "Error highlighting text.");
+			paintVisible();
+			idle.restart();
+		} else {
+			paint(range);
 		}
 	}
 
-	private void repaintList(	ArrayList<Range> list,
-					Range r,
-					SimpleAttributeSet attr)
-	{
-		try {
-			int i = 0;
-			while (	i < list.size() &&
-				list.get(i).getEnd() < r.getOffset())
-			{
-				i++;
-			}
+	public void stateChanged(ChangeEvent e) {
+		// The viewport was scrolled or resized.
 
-			while (	i < list.size() &&
-				list.get(i).getOffset() < r.getEnd())
-			{
-				doc.setCharacterAttributes(
-					list.get(i).getOffset(),
-					list.get(i).getLength(),
-					attr,
-					false
-				);
+		paintVisible();
+	}
 
-				if (	list.equals(lists[STRING]) ||
-					list.equals(lists[CHAR]))
-				{
-					paintEscapes(list.get(i));
-				}
+	public void actionPerformed(ActionEvent e) {
+		// Nothing has been typed for a while, so paint
+		// the next chunk of what hasn't been painted yet.
 
-				i++;
-			}
-		} catch (Exception e) {
-			ErrorMgr.show(e, "Error painting list.");
+		if (stale.size() == 0 || !Defaults.HIGHLIGHT) {
+			idle.stop();
+			return;
 		}
+
+		Element root = doc.getDefaultRootElement();
+		int start = stale.getStart(0);
+		int line = root.getElementIndex(Math.min(stale.getEnd(0),
+							start + IDLE_CHUNK));
+
+		paintStale(start, root.getElement(line).getEndOffset());
 	}
 
-	private void repaintNumbers(Range r) {
-		String s = getSafeText(r);
-		Range[] rarr = splitByDelimiter(s);
-		String[] sarr = stringsFromRanges(s, rarr);
+	private void paintVisible() {
+		// Paints the lines that can be seen, along with
+		// the margin of lines above and below them.
 
-		for (int i = 0; i < sarr.length; i++) {
-			if (isDecimalNum(sarr[i])) {
-				colorNum(rarr[i].getOffset() + r.getOffset(),
-							rarr[i].getLength());
-			} else if (isColorNum(sarr[i])) {
-				colorNum(rarr[i].getOffset() + r.getOffset(),
-							rarr[i].getLength());
-			}
+		if (stale.size() == 0 || !Defaults.HIGHLIGHT) {
+			return;
 		}
+
+		Rectangle rect = view.getVisibleRect();
+		// Before the view is laid out these are -1, which
+		// leaves just the lines at the start of the document.
+		int top = Math.max(0, view.viewToModel2D(
+					new Point(rect.x, rect.y)));
+		int bottom = Math.max(0, view.viewToModel2D(new Point(
+			rect.x + rect.width, rect.y + rect.height)));
+
+		Element root = doc.getDefaultRootElement();
+		int first = Math.max(0,
+			root.getElementIndex(top) - Defaults.HIGHLIGHT_MARGIN);
+		int last = Math.min(root.getElementCount() - 1,
+			root.getElementIndex(bottom) + Defaults.HIGHLIGHT_MARGIN);
+
+		paintStale(root.getElement(first).getStartOffset(),
+				root.getElement(last).getEndOffset());
 	}
 
-	private void paintEscapes(Range r) {
-		String text = getSafeText(r);
+	private void paintStale(int start, int end) {
+		// Paints whatever hasn't been painted from start to end.
 
-		for (int i = 0; i < text.length(); i++) {
-			if (text.charAt(i) == '\\') {
-				if (text.length() > i + 1) {
-					char esc = text.charAt(i + 1);
+		end = Math.min(end, doc.getLength() + 1);
 
-					if (	esc == 't' ||
-						esc == 'r' ||
-						esc == '\\' ||
-						esc == 'n' ||
-						esc == '\'' ||
-						esc == '"' ||
-						esc == 'b' ||
-						esc == 'f' ||
-						esc == '0')
-					{
-						docSetEscape(r.getOffset()+i,2);
-					} else if (esc == 'u') {
-						if (text.length() > i + 5 &&
-							onlyContainsHex(
-							text.substring(i + 2,
-							i + 6)))
-						{
-							docSetEscape(
-								r.getOffset()+i,
-								6
-							);
-						}
-					}
-				}
-			}
+		int i = stale.firstEndingAfter(start);
+		while (i < stale.size() && stale.getStart(i) < end) {
+			int from = Math.max(start, stale.getStart(i));
+			int to = Math.min(end, stale.getEnd(i));
+
+			paint(new Range(from, to - from));
+			i = stale.firstEndingAfter(to);
 		}
 	}
 
-	private void docSetEscape(int i, int l) {
-		try {
-			doc.setCharacterAttributes(i, l, escapeAttr, false);
-		} catch (Exception e) {
-			ErrorMgr.show(e, "Error highlighting escapes.");
+	private void paint(Range range) {
+		// Copies out the text to be painted, along with the ranges in
+		// it, and works out its styles on the highlighting thread. When
+		// there is no view to keep responsive, it is done straight away.
+
+		int start = range.getOffset();
+		int end = Math.min(range.getEnd() + 1, doc.getLength());
+
+		stale.subtract(start, range.getEnd() + 1);
+
+		if (end <= start) {
+			return;
+		}
+
+		Snapshot snapshot = new Snapshot(start, end);
+
+		if (view == null) {
+			apply(snapshot, snapshot.tokenize());
+		} else {
+			pending.union(start, end);
+			worker.execute(snapshot);
 		}
 	}
 
-	private int findRejoin(ArrayList[] a, ArrayList[] b, int start) {
-		for (int i = 0; i < a.length; i++) {
-			int i1 = findNextInList(a[i], start);
-			int i2 = findNextInList(b[i], start);
+	private void apply(Snapshot snapshot, TokenArray tokens) {
+		// Hands the styles worked out for a snapshot to the styled
+		// document, unless the text has changed since it was taken.
+		// Text that was being worked on when it changed has already
+		// been put back into stale to be painted again.
 
-			if (i1 == -1 || i2 == -1) {
-				continue;
-			}
+		if (snapshot.version != version) {
+			return;
+		}
 
-			int offset = i2 - i1;
+		int start = snapshot.start;
+		int end = start + snapshot.text.length;
 
-			int j1 = findNextInList(a[i], i1 + 1);
-			int j2 = findNextInList(b[i], i2 + 1);
+		pending.subtract(start, end);
 
-			if (j1 == -1 || j2 == -1) {
-				continue;
+		if (paintsRuns) {
+			// Swaps the runs in the snapshot's text for the new ones,
+			// and has the view repaint them.
+			TokenArray flat = tokens.flatten(snapshot.text.length);
+			RangeList fresh = new RangeList();
+
+			for (int i = 0; i < flat.size(); i++) {
+				fresh.add(start + flat.getStart(i), start + flat.getStart(i)
+						+ flat.getLength(i), flat.getStyle(i));
 			}
 
-			if (offset == (j2 - j1)) {
-				return i1;
+			runs.subtract(start, end);
+			int at = runs.firstAtOrAfter(start);
+			runs.replace(at, at, fresh);
+
+			repaintView(start, end);
+			return;
+		}
+
+		if (doc instanceof SyntaxDocument) {
+			// With Paint Highlight turned off, the text is restyled
+			// with the final runs in one change, instead of painting
+			// each layer of tokens over the last.
+			AttributeSet[] all = new AttributeSet[ESCAPE_STYLE + 1];
+			for (int i = 0; i < all.length; i++) {
+				all[i] = getStyle(i);
 			}
+
+			((SyntaxDocument) doc).setCharacterRuns(start,
+					snapshot.text.length,
+					tokens.flatten(snapshot.text.length),
+					all, profile.getNormalStyle());
+		} else {
+			applyTokens(snapshot, tokens);
 		}
 
-		return doc.getLength() - 1;
+		for (int i = 0; i < repaintListeners.size(); i++) {
+			repaintListeners.get(i).run();
+		}
 	}
 
-	private int findNextInList(ArrayList<Range> list, int k) {
-		int i = 0;
-		while (i < list.size() && list.get(i).getOffset() < k) {
-			i++;
-		}
+	private void applyTokens(Snapshot snapshot, TokenArray tokens) {
+		try {
+			doc.setCharacterAttributes(	snapshot.start,
+							snapshot.text.length,
+							profile.getNormalStyle(),
+							true);
+
+			for (int i = 0; i < tokens.size(); i++) {
+				int style = tokens.getStyle(i);
 
-		if (i == list.size()) {
-			return -1;
+				doc.setCharacterAttributes(
+					snapshot.start + tokens.getStart(i),
+					tokens.getLength(i),
+					getStyle(style),
+					style < NUM_STYLE
+				);
+			}
+		} catch (Exception e) {
+			ErrorMgr.show(e, "Error highlighting text.");
 		}
+	}
 
-		return list.get(i).getOffset();
+	public AttributeSet getStyle(int style) {
+		return profile.getStyle(style);
 	}
 
-	private Range[] splitByDelimiter(String s) {
-		ArrayList<Range> list = new ArrayList<Range>();
-		char c;
-		boolean lastWasDelimiter = true;
-		int start = -1;
+	public void addRepaintListener(Runnable r) {
+		// Runs r whenever newly worked out styles are painted, for
+		// anything painted on top of the highlighting that they
+		// would have painted over.
 
-		for (int i = 0; i < s.length(); i++) {
-			c = s.charAt(i);
+		repaintListeners.add(r);
+	}
 
-			if (EditorPane.isDelimiter(c) && c != '.' && c != '#') {
-				if (!lastWasDelimiter) {
-					list.add(new Range(start, i - start));
-					lastWasDelimiter = true;
-					start = -1;
-				}
-			} else {
-				if (lastWasDelimiter) {
-					start = i;
-					lastWasDelimiter = false;
+	public void removeRepaintListener(Runnable r) {
+		repaintListeners.remove(r);
+	}
+
+	private void discardPending() {
+		// Any text being worked on will have its result dropped,
+		// so it goes back to waiting to be painted.
+
+		for (int i = 0; i < pending.size(); i++) {
+			stale.union(pending.getStart(i), pending.getEnd(i));
+		}
+
+		pending.clear();
+		version++;
+	}
+
+	private class Snapshot implements Runnable {
+		// A copy of everything needed to work out the styles of some
+		// text. It is run on the highlighting thread, so it only uses
+		// its own fields, which never change once it is made.
+
+		private final int version, start;
+		private final char[] text;
+		private final int[][] ranges = new int[lists.length][];
+		private final KeywordTable keywords;
+		private final int periodMask, functionMask;
+
+		private Snapshot(int start, int end) {
+			this.version = HighlightManager.this.version;
+			this.start = start;
+			this.keywords = profile.getKeywords();
+			this.periodMask = profile.getPeriodMask();
+			this.functionMask = profile.getFunctionMask();
+
+			text = new char[end - start];
+			new DocumentText(doc, start, end - start).getChars(0, text.length, text, 0);
+
+			for (int i = 0; i < lists.length; i++) {
+				RangeList list = lists[i];
+				int from = list.firstEndingAfter(start);
+				int to = list.firstAtOrAfter(end);
+
+				ranges[i] = new int[Math.max(0, to - from) * 2];
+				for (int j = from; j < to; j++) {
+					ranges[i][(j - from) * 2] = list.getStart(j);
+					ranges[i][(j - from) * 2 + 1] = list.getEnd(j);
 				}
 			}
 		}
 
-		if (start != -1) {
-			list.add(new Range(start, s.length() - start));
+		public void run() {
+			final TokenArray tokens = tokenize();
+
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					apply(Snapshot.this, tokens);
+				}
+			});
 		}
 
-		return list.toArray(new Range[0]);
-	}
+		private TokenArray tokenize() {
+			// Styles are listed in the order they are painted in,
+			// so a later one takes over from an earlier one.
+
+			TokenArray tokens = new TokenArray();
+
+			if (text.length > 1) {
+				tokenizeKeywords(tokens);
+			}
+
+			tokenizeNumbers(tokens);
+
+			for (int i = 0; i < ranges.length; i++) {
+				for (int j = 0; j < ranges[i].length; j += 2) {
+					int from = Math.max(ranges[i][j] - start, 0);
+					int to = Math.min(ranges[i][j + 1] - start,
+								text.length);
+
+					tokens.add(from, to - from, LIST_STYLE + i);
 
-	private String[] stringsFromRanges(String s, Range[] r) {
-		String[] out = new String[r.length];
+					if (i == STRING || i == CHAR) {
+						tokenizeEscapes(tokens, from, to);
+					}
+				}
+			}
 
-		for (int i = 0; i < r.length; i++) {
-			out[i] = s.substring(r[i].getOffset(), r[i].getEnd()+1);
+			return tokens;
 		}
 
-		return out;
-	}
+		private void tokenizeKeywords(TokenArray tokens) {
+			// Finds every word in the text in one pass. Each word is
+			// looked up once, and the categories it is in are narrowed
+			// down to the ones whose rules allow where the word is.
+			// When more than one is left, the last category wins.
 
-	private boolean isDecimalNum(String s) {
-		try {
-			Double.parseDouble(s);
-			return true;
-		} catch (NumberFormatException e) {
-			try {
-				Long.parseLong(s);
-				return true;
-			} catch (NumberFormatException f) {
-				try {
-					Long.parseLong(s.substring(
-							0, s.length() - 1));
-
-					char c = s.charAt(s.length() - 1);
-					if (c == 'l' || c == 'L') {
-						return true;
+			int last = text.length;
+
+			int i = 0;
+			while (i < last) {
+				if (!isWordChar(text[i])) {
+					i++;
+					continue;
+				}
+
+				int begin = i;
+				while (i < last && isWordChar(text[i])) {
+					i++;
+				}
+
+				int found = keywords.lookup(text, begin, i - begin);
+				if (found == 0) {
+					continue;
+				}
+
+				boolean afterPeriod = begin > 0 && text[begin - 1] == '.';
+				boolean beforePeriod = i < last && text[i] == '.';
+
+				int allowed = periodMask & ~functionMask;
+
+				if (isCall(i)) {
+					allowed |= periodMask & functionMask;
+
+					if (!afterPeriod) {
+						allowed |= functionMask & ~periodMask;
 					}
+				}
 
-					return false;
-				} catch (NumberFormatException g) {
-					return false;
+				if (!afterPeriod && !beforePeriod) {
+					allowed |= ~(periodMask | functionMask);
+				}
+
+				found &= allowed;
+				if (found != 0) {
+					tokens.add(begin, i - begin,
+						31 - Integer.numberOfLeadingZeros(found));
 				}
 			}
 		}
-	}
 
-	private boolean isColorNum(String s) {
-		if (s.charAt(0) == '#' && onlyContainsHex(s.substring(1))) {
-			return true;
-		}
+		private boolean isCall(int i) {
+			// Returns true if the word ending at i is followed by an
+			// opening bracket, with only whitespace in between.
 
-		return false;
-	}
+			while (i < text.length && Character.isWhitespace(text[i])) {
+				i++;
+			}
 
-	private void colorNum(int start, int length) {
-		try {
-			doc.setCharacterAttributes(	start,
-							length,
-							numAttr,
-							false);
-		} catch (Exception e) {
-			ErrorMgr.show(e, "Error coloring numbers.");
+			return i < text.length && text[i] == '(';
 		}
-	}
 
-	private void expand(Range r) {
-		checkForMultilineComments(r);
+		private void tokenizeNumbers(TokenArray tokens) {
+			// Splits the text into words the same way as the rest of the
+			// editor, except that periods and hashes are kept in the word,
+			// and highlights the words that are number literals.
 
-		int start = Math.max(r.getOffset() - 1, 0);
-		int end = Math.min(doc.getLength(), r.getEnd() + 1);
+			int i = 0;
+			while (i < text.length) {
+				if (!isNumberChar(text[i])) {
+					i++;
+					continue;
+				}
 
-		try {
-			while (start > 0 &&!doc.getText(start, 1).equals("\n")){
-				start--;
-			}
+				int begin = i;
+				while (i < text.length && isNumberChar(text[i])) {
+					i++;
+				}
 
-			while (	end < doc.getLength() &&
-				!doc.getText(end, 1).equals("\n"))
-			{
-				end++;
+				if (isNumber(text, begin, i)) {
+					tokens.add(begin, i - begin, NUM_STYLE);
+				}
 			}
+		}
 
-			r.setOffset(start);
-			r.setEnd(end);
-		} catch (Exception e) {
-			ErrorMgr.show(e, "Error expanding to line.");
+		private void tokenizeEscapes(TokenArray tokens, int from, int to) {
+			for (int i = from; i < to; i++) {
+				if (text[i] == '\\' && i + 1 < to) {
+					char esc = text[i + 1];
+
+					if (	esc == 't' ||
+						esc == 'r' ||
+						esc == '\\' ||
+						esc == 'n' ||
+						esc == '\'' ||
+						esc == '"' ||
+						esc == 'b' ||
+						esc == 'f' ||
+						esc == '0')
+					{
+						tokens.add(i, 2, ESCAPE_STYLE);
+					} else if (esc == 'u' && i + 5 < to &&
+						isHex(text[i + 2]) &&
+						isHex(text[i + 3]) &&
+						isHex(text[i + 4]) &&
+						isHex(text[i + 5]))
+					{
+						tokens.add(i, 6, ESCAPE_STYLE);
+					}
+				}
+			}
 		}
 	}
 
-	private boolean checkForMultilineComments(Range range) {
-		Range a = rangeArrayContains(oldLists[ML_COMMENT], range.getOffset());
-		Range b = rangeArrayOverlaps(lists[ML_COMMENT], range);
+	private static boolean isWordChar(char c) {
+		return c < WORD_CHARS.length && WORD_CHARS[c];
+	}
 
-		if (a == null && b == null) {
-			return false;
-		}
+	private static boolean[] generateWordChars() {
+		boolean[] arr = new boolean[128];
 
-		int aStart = (a == null) ? Integer.MAX_VALUE : a.getOffset();
-		int bStart = (b == null) ? Integer.MAX_VALUE : b.getOffset();
+		for (char c : EditorPane.ANTI_DELIMITERS) {
+			arr[c] = true;
+		}
 
-		int start = Math.min(aStart, bStart);
+		return arr;
+	}
 
-		range.setOffset(start);
-		range.setEnd(doc.getLength() - 1);
-		return true;
+	private static boolean isNumberChar(char c) {
+		return isWordChar(c) || c == '.' || c == '#';
 	}
 
-	private Range rangeArrayContains(ArrayList<Range> list, int index) {
-		for (int i = 0; i < list.size(); i++) {
-			if (list.get(i).contains(index)) {
-				return list.get(i);
+	private static boolean isNumber(char[] text, int begin, int end) {
+		// Returns true if the text from begin to end (exclusive) is an int,
+		// long, float, double, hex, binary or colour literal, going through
+		// it one character at a time. Underscores are allowed between
+		// digits, and a minus sign is allowed in front since it is part of
+		// the word.
+
+		int state = START;
+		int colorDigits = 0;
+
+		for (int i = begin; i < end && state != REJECT; i++) {
+			char c = text[i];
+			boolean digit = c >= '0' && c <= '9';
+
+			switch (state) {
+				case START:
+				case SIGN:
+					if (state == START && c == '#') {
+						state = COLOR;
+					} else if (state == START && c == '-') {
+						state = SIGN;
+					} else if (c == '0') {
+						state = ZERO;
+					} else if (digit) {
+						state = INT;
+					} else if (c == '.') {
+						state = DOT;
+					} else {
+						state = REJECT;
+					}
+					break;
+				case ZERO:
+				case INT:
+					if (state == ZERO && (c == 'x' || c == 'X')) {
+						state = HEX_PREFIX;
+					} else if (state == ZERO && (c == 'b' || c == 'B')) {
+						state = BIN_PREFIX;
+					} else if (digit) {
+						state = INT;
+					} else if (c == '_') {
+						state = INT_GAP;
+					} else if (c == '.') {
+						state = POINT;
+					} else if (c == 'e' || c == 'E') {
+						state = EXP;
+					} else if (c == 'l' || c == 'L' || isFloatSuffix(c)) {
+						state = SUFFIX;
+					} else {
+						state = REJECT;
+					}
+					break;
+				case INT_GAP:
+					state = digit ? INT : (c == '_') ? INT_GAP : REJECT;
+					break;
+				case DOT:
+					state = digit ? FRACTION : REJECT;
+					break;
+				case POINT:
+				case FRACTION:
+					if (digit) {
+						state = FRACTION;
+					} else if (c == '_' && state == FRACTION) {
+						state = FRACTION_GAP;
+					} else if (c == 'e' || c == 'E') {
+						state = EXP;
+					} else if (isFloatSuffix(c)) {
+						state = SUFFIX;
+					} else {
+						state = REJECT;
+					}
+					break;
+				case FRACTION_GAP:
+					state = digit ? FRACTION : (c == '_') ? FRACTION_GAP : REJECT;
+					break;
+				case EXP:
+					state = digit ? EXP_DIGITS : (c == '-') ? EXP_SIGN : REJECT;
+					break;
+				case EXP_SIGN:
+					state = digit ? EXP_DIGITS : REJECT;
+					break;
+				case EXP_DIGITS:
+					if (digit) {
+						state = EXP_DIGITS;
+					} else if (c == '_') {
+						state = EXP_GAP;
+					} else if (isFloatSuffix(c)) {
+						state = SUFFIX;
+					} else {
+						state = REJECT;
+					}
+					break;
+				case EXP_GAP:
+					state = digit ? EXP_DIGITS : (c == '_') ? EXP_GAP : REJECT;
+					break;
+				case HEX_PREFIX:
+				case HEX:
+					if (isHex(c)) {
+						state = HEX;
+					} else if (state == HEX && c == '_') {
+						state = HEX_GAP;
+					} else if (state == HEX && (c == 'l' || c == 'L')) {
+						state = SUFFIX;
+					} else {
+						state = REJECT;
+					}
+					break;
+				case HEX_GAP:
+					state = isHex(c) ? HEX : (c == '_') ? HEX_GAP : REJECT;
+					break;
+				case BIN_PREFIX:
+				case BIN:
+					if (c == '0' || c == '1') {
+						state = BIN;
+					} else if (state == BIN && c == '_') {
+						state = BIN_GAP;
+					} else if (state == BIN && (c == 'l' || c == 'L')) {
+						state = SUFFIX;
+					} else {
+						state = REJECT;
+					}
+					break;
+				case BIN_GAP:
+					state = (c == '0' || c == '1') ? BIN :
+						(c == '_') ? BIN_GAP : REJECT;
+					break;
+				case COLOR:
+					// A colour is a hash and then exactly six hex digits.
+					colorDigits++;
+					if (!isHex(c) || colorDigits > 6) {
+						state = REJECT;
+					}
+					break;
+				default:
+					// Nothing can come after a suffix.
+					state = REJECT;
 			}
 		}
 
-		return null;
-	}
-
-	private boolean rangeArrayContains(ArrayList<Range> list, Range r) {
-		for (int i = 0; i < list.size(); i++) {
-			if (list.get(i).contains(r)) {
+		switch (state) {
+			case ZERO:
+			case INT:
+			case POINT:
+			case FRACTION:
+			case EXP_DIGITS:
+			case HEX:
+			case BIN:
+			case SUFFIX:
 				return true;
-			}
+			case COLOR:
+				return colorDigits == 6;
+			default:
+				return false;
 		}
+	}
 
-		return false;
+	private static boolean isFloatSuffix(char c) {
+		return c == 'f' || c == 'F' || c == 'd' || c == 'D';
 	}
 
-	private Range rangeArrayOverlaps(ArrayList<Range> list, Range r) {
-		for (int i = 0; i < list.size(); i++) {
-			if (list.get(i).overlaps(r)) {
-				return list.get(i);
-			}
+	private void expand(Range r) {
+		// Expands the range out to the newlines on either side of it.
+
+		int len = doc.getLength();
+		int start = Math.max(r.getOffset() - 1, 0);
+		int end = Math.min(len, r.getEnd() + 1);
+
+		int line = lineOf(start);
+		if (line + 1 == lineCount() || lineStart(line + 1) - 1 != start) {
+			start = Math.max(lineStart(line) - 1, 0);
 		}
 
-		return null;
+		line = lineOf(end);
+		end = (line + 1 < lineCount()) ? lineStart(line + 1) - 1 : len;
+
+		r.setOffset(start);
+		r.setEnd(Math.max(start, Math.min(end, len)));
 	}
 
 	public boolean shouldInsert(int index) {
+		// The lexing is brought up to date first, since the pass
+		// for the last edit may still be waiting to run.
+
+		recalculate();
+
 		for (int i = 0; i < lists.length; i++) {
-			ArrayList<Range> list = lists[i];
-			for (int j = 0; j < list.size(); j++) {
-				if (list.get(j).contains(index)) {
-					return false;
-				}
+			if (lists[i].indexContaining(index) != -1) {
+				return false;
 			}
 		}
 
@@ -769,12 +1448,16 @@ public class HighlightManager {
 	}
 
 	public boolean shouldInsertIgnoreEnd(int index) {
+		// The last character of a range doesn't count, so index
+		// has to be inside of the range and not at its end.
+
+		recalculate();
+
 		for (int i = 0; i < lists.length; i++) {
-			ArrayList<Range> list = lists[i];
-			for (int j = 0; j < list.size(); j++) {
-				if (list.get(j).containsIgnoreEnd(index)) {
-					return false;
-				}
+			int j = lists[i].indexContaining(index);
+
+			if (j != -1 && lists[i].getEnd(j) - 1 > index) {
+				return false;
 			}
 		}
 
@@ -782,18 +1465,22 @@ public class HighlightManager {
 	}
 	
 	public boolean shouldRemove(int start, int length) {
-		Range r = new Range(start, length);
-		
+		// Only a range that starts inside of the removed text, or the
+		// one that the removed text starts inside of, can decide this.
+
+		recalculate();
+
 		for (int i = 0; i < lists.length; i++) {
-			ArrayList<Range> list = lists[i];
-			for (int j = 0; j < list.size(); j++) {
-				Range range = list.get(j);
-				
-				if (r.contains(range.getOffset())) {
-					return true;
-				} else if (range.overlaps(r)) {
-					return false;
-				}
+			RangeList list = lists[i];
+			int j = list.indexContaining(start);
+
+			if (j != -1) {
+				return list.getStart(j) == start;
+			}
+
+			j = list.firstAtOrAfter(start);
+			if (j < list.size() && list.getStart(j) < start + length) {
+				return true;
 			}
 		}
 		
@@ -0,0 +1,122 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Collects the text that edits to a document have damaged, and has its
+*	highlight manager relex and repaint all of it at once, at most once a
+*	frame. Holding down a key or pasting quickly then costs one pass for
+*	everything that changed instead of one for every change.
+*/
+
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.Timer;
+
+
+public class HighlightScheduler implements ActionListener {
+	private static final int FRAME_DELAY = 16;
+
+	private HighlightManager mgr;
+	private Timer timer = new Timer(FRAME_DELAY, this);
+
+	// The damaged text, with overlapping and touching ranges merged.
+	// It moves along with the text as it is edited, since a pass
+	// may not run until a few more edits have been made.
+	private RangeList damaged = new RangeList();
+
+	private long requests = 0, passes = 0, coalesced = 0;
+	private int waiting = 0;
+
+	public HighlightScheduler(HighlightManager mgr) {
+		this.mgr = mgr;
+		timer.setRepeats(false);
+	}
+
+	public void post(Range range) {
+		// Marks range as needing to be highlighted again. Ranges can
+		// be empty, such as where text was removed, so every range
+		// covers at least the character it starts at.
+
+		int start = Math.max(0, range.getOffset());
+		damaged.union(start, start + Math.max(1, range.getLength()));
+		requests++;
+
+		// The timer can go off before the pass it asked for is run,
+		// so the requests waiting on a pass are counted separately.
+		if (waiting > 0) {
+			coalesced++;
+		}
+
+		waiting++;
+
+		if (!timer.isRunning()) {
+			timer.start();
+		}
+	}
+
+	public void flush() {
+		// Highlights everything that has been posted straight away.
+
+		timer.stop();
+		waiting = 0;
+
+		if (damaged.size() == 0) {
+			return;
+		}
+
+		Range[] ranges = new Range[damaged.size()];
+		for (int i = 0; i < ranges.length; i++) {
+			ranges[i] = damaged.get(i);
+		}
+
+		damaged.clear();
+		passes++;
+
+		mgr.recalculate();
+		for (int i = 0; i < ranges.length; i++) {
+			mgr.repaint(ranges[i]);
+		}
+	}
+
+	public void cancel() {
+		// Drops everything posted, such as when the document changes.
+
+		timer.stop();
+		waiting = 0;
+		damaged.clear();
+	}
+
+	public boolean isPending() {
+		return damaged.size() > 0;
+	}
+
+	public void actionPerformed(ActionEvent e) {
+		flush();
+	}
+
+	public void insertUpdate(int offset, int length) {
+		damaged.insertUpdate(offset, length);
+	}
+
+	public void removeUpdate(int offset, int length) {
+		damaged.removeUpdate(offset, length);
+	}
+
+	public long getRequestCount() {
+		return requests;
+	}
+
+	public long getPassCount() {
+		return passes;
+	}
+
+	public long getCoalescedCount() {
+		// Returns how many requests were folded into a pass
+		// that had already been asked for.
+
+		return coalesced;
+	}
+}
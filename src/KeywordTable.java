@@ -0,0 +1,94 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Every keyword list merged into one hash table, mapping a word to the
+*	categories it is in. Words are looked up straight out of a char array,
+*	so the highlighter doesn't have to make a String for every word it
+*	checks.
+*/
+
+
+public class KeywordTable {
+	private char[][] words;
+	private int[] categories;
+	private int mask;
+
+	public KeywordTable(String[][] lists) {
+		// The index of each list is its category, so a word in
+		// lists[3] has bit 3 set in the categories it maps to.
+
+		int count = 0;
+		for (int i = 0; i < lists.length; i++) {
+			count += lists[i].length;
+		}
+
+		int size = 16;
+		while (size < count * 2) {
+			size *= 2;
+		}
+
+		words = new char[size][];
+		categories = new int[size];
+		mask = size - 1;
+
+		for (int i = 0; i < lists.length; i++) {
+			for (int j = 0; j < lists[i].length; j++) {
+				add(lists[i][j].toCharArray(), i);
+			}
+		}
+	}
+
+	private void add(char[] word, int category) {
+		int slot = hash(word, 0, word.length) & mask;
+
+		while (words[slot] != null && !equals(words[slot], word, 0, word.length)) {
+			slot = (slot + 1) & mask;
+		}
+
+		words[slot] = word;
+		categories[slot] |= 1 << category;
+	}
+
+	public int lookup(char[] array, int offset, int length) {
+		// Returns the categories the word in array from offset to
+		// offset + length is in, as bits, or 0 if it isn't a keyword.
+
+		int slot = hash(array, offset, length) & mask;
+
+		while (words[slot] != null) {
+			if (equals(words[slot], array, offset, length)) {
+				return categories[slot];
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		return 0;
+	}
+
+	private static int hash(char[] array, int offset, int length) {
+		int h = 0;
+
+		for (int i = offset; i < offset + length; i++) {
+			h = 31 * h + array[i];
+		}
+
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean equals(char[] word, char[] array, int offset, int length) {
+		if (word.length != length) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (word[i] != array[offset + i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,214 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	The keyword table and styles that every highlight manager highlights
+*	with, built once from the Defaults and shared by every open tab. A
+*	profile is never changed once it is built; when the settings change,
+*	a new one is built and swapped in for the old one all at once.
+*/
+
+
+import java.awt.Color;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+
+
+public class LanguageProfile {
+	// The keyword categories, which are also the styles of the
+	// keywords in them.
+	public static final int	ACCESS = 0,
+				VARS = 1,
+				COMPOSITE = 2,
+				PREDEFINED = 3,
+				FLOW = 4,
+				IMPORT = 5,
+				OBJECT = 6,
+				DEFINABLE = 7,
+				PRIMITIVE = 8,
+				TFN = 9,
+				CLASS = 10;
+
+	// The rest of the styles. The lists come after numbers in the order
+	// strings, single line comments, multiline comments, chars.
+	public static final int	NUM_STYLE = 11,
+				LIST_STYLE = 12,
+				ESCAPE_STYLE = 16,
+				STYLE_COUNT = 17;
+
+	private static volatile LanguageProfile current = null;
+
+	private final KeywordTable keywords;
+	private final int periodMask, functionMask;
+	private final SimpleAttributeSet[] styles =
+				new SimpleAttributeSet[STYLE_COUNT];
+	private final SimpleAttributeSet normal = new SimpleAttributeSet();
+
+	private LanguageProfile() {
+		Attribute[] attrs = new Attribute[NUM_STYLE];
+
+		attrs[ACCESS] = new Attribute(		Defaults.ACCESS_L,
+							Defaults.ACCESS,
+							Defaults.ACCESS_B,
+							false,
+							true);
+
+		attrs[CLASS] = new Attribute(		Defaults.CLASS_L,
+							Defaults.CLASS,
+							Defaults.CLASS_B,
+							false,
+							true);
+
+		attrs[COMPOSITE] = new Attribute(	Defaults.COMPOSITE_L,
+							Defaults.COMPOSITE,
+							Defaults.COMPOSITE_B,
+							false,
+							false);
+
+		attrs[DEFINABLE] = new Attribute(	Defaults.DEFINABLE_L,
+							Defaults.DEFINABLE,
+							Defaults.DEFINABLE_B,
+							true,
+							true);
+
+		attrs[FLOW] = new Attribute(		Defaults.FLOW_L,
+							Defaults.FLOW,
+							Defaults.FLOW_B,
+							false,
+							false);
+
+		attrs[IMPORT] = new Attribute(		Defaults.IMPORT_L,
+							Defaults.IMPORT,
+							Defaults.IMPORT_B,
+							false,
+							true);
+
+		attrs[OBJECT] = new Attribute(		Defaults.OBJECT_L,
+							Defaults.OBJECT,
+							Defaults.OBJECT_B,
+							false,
+							true);
+
+		attrs[PREDEFINED] = new Attribute(	Defaults.PREDEFINED_L,
+							Defaults.PREDEFINED,
+							Defaults.PREDEFINED_B,
+							true,
+							false);
+
+		attrs[PRIMITIVE] = new Attribute(	Defaults.PRIMITIVE_L,
+							Defaults.PRIMITIVE,
+							Defaults.PRIMITIVE_B,
+							false,
+							false);
+
+		attrs[TFN] = new Attribute(		Defaults.TFN_L,
+							Defaults.TFN,
+							Defaults.TFN_B,
+							false,
+							false);
+
+		attrs[VARS] = new Attribute(		Defaults.VARS_L,
+							Defaults.VARS,
+							Defaults.VARS_B,
+							false,
+							false);
+
+		// Every list goes into one table, so that each word only has
+		// to be looked up once no matter how many lists it could be in.
+		String[][] words = new String[attrs.length][];
+		int period = 0, function = 0;
+
+		for (int i = 0; i < attrs.length; i++) {
+			words[i] = attrs[i].getWords();
+			styles[i] = attrs[i];
+
+			if (attrs[i].usesPeriodDelimiter()) {
+				period |= 1 << i;
+			}
+
+			if (attrs[i].isFunctions()) {
+				function |= 1 << i;
+			}
+		}
+
+		keywords = new KeywordTable(words);
+		periodMask = period;
+		functionMask = function;
+
+		SimpleAttributeSet comment = style(	Defaults.COMMENT,
+							Defaults.COMMENT_B);
+
+		styles[NUM_STYLE] = style(Defaults.NUM, Defaults.NUM_B);
+		styles[LIST_STYLE] = style(Defaults.STRING, Defaults.STRING_B);
+		styles[LIST_STYLE + 1] = comment;
+		styles[LIST_STYLE + 2] = comment;
+		styles[LIST_STYLE + 3] = style(Defaults.CHAR, Defaults.CHAR_B);
+		styles[ESCAPE_STYLE] = style(Defaults.ESCAPE, Defaults.ESCAPE_B);
+
+		// Normal text cannot be bolded.
+		StyleConstants.setForeground(normal, Defaults.EDITOR_FONT_COLOR);
+	}
+
+	private static SimpleAttributeSet style(Color color, boolean bold) {
+		SimpleAttributeSet set = new SimpleAttributeSet();
+
+		StyleConstants.setForeground(set, color);
+		StyleConstants.setBold(set, bold);
+
+		return set;
+	}
+
+	public static LanguageProfile get() {
+		// Returns the profile in use, building it the first time.
+
+		LanguageProfile profile = current;
+
+		if (profile == null) {
+			synchronized (LanguageProfile.class) {
+				if (current == null) {
+					current = new LanguageProfile();
+				}
+
+				profile = current;
+			}
+		}
+
+		return profile;
+	}
+
+	public static void reload() {
+		// Builds a profile from the Defaults as they are now, and
+		// swaps it in for the highlight managers to pick up. Managers
+		// already using the old one keep it until they update.
+
+		current = new LanguageProfile();
+	}
+
+	public KeywordTable getKeywords() {
+		return keywords;
+	}
+
+	public int getPeriodMask() {
+		// Returns the categories, as bits, that split words by periods.
+
+		return periodMask;
+	}
+
+	public int getFunctionMask() {
+		// Returns the categories, as bits, that are only
+		// highlighted as function calls.
+
+		return functionMask;
+	}
+
+	public AttributeSet getStyle(int style) {
+		return styles[style];
+	}
+
+	public AttributeSet getNormalStyle() {
+		return normal;
+	}
+}
@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-12-17
-*	Modified: 2021-12-17
+*	Modified: 2026-10-18
 *
 *	Contains the GUI components and methods required
 *	to search for a line in a document.
@@ -24,13 +24,21 @@ import javax.swing.JTextField;
 @SuppressWarnings("serial")
 public class LineFinder extends JTextField implements KeyListener, ComponentListener, FocusListener {
 	private EditorPane editor;
+	private FileViewer viewer;
 	private StyledDocument doc;
 	private JComponent parent;
 	
 	public LineFinder() {
 		// Default constructor.
 		
-		this(null, null);
+		this((EditorPane) null, null);
+	}
+
+	public LineFinder(FileViewer viewer, JComponent parent) {
+		// Finds lines in a read-only view of a file instead.
+
+		this((EditorPane) null, parent);
+		this.viewer = viewer;
 	}
 	
 	public LineFinder(EditorPane editor, JComponent parent) {
@@ -100,6 +108,11 @@ public class LineFinder extends JTextField implements KeyListener, ComponentList
 	}
 
 	public void setToIndexForLine(int line) {
+		if (viewer != null) {
+			viewer.goToLine(line);
+			return;
+		}
+
 		int p = findIndexForLine(line);
 				
 		if (p != -1) {
@@ -134,32 +147,13 @@ public class LineFinder extends JTextField implements KeyListener, ComponentList
 		// Finds the index of the start of the given line.
 		// Line 1 is the first line.
 		
-		if (line < 0) {
-			return -1;
-		}
-		
-		String text = getSafeText();
-		int ln = 1;
+		LineIndex index = LineIndex.get(doc);
 		
-		for (int i = 0; i < text.length(); i++) {
-			if (ln == line) {
-				return i;
-			}
-			
-			if (text.charAt(i) == '\n') {
-				ln++;
-			}
+		if (line < 1 || line > index.getLineCount()) {
+			return -1;
 		}
 
-		return -1;
-	}
-	
-	private String getSafeText() {
-		try {
-			return doc.getText(0, doc.getLength());
-		} catch (Exception e) {
-			return null;
-		}
+		return index.getLineStart(line - 1);
 	}
 	
 	// Residue of imlementing ComponentListener.
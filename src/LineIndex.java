@@ -0,0 +1,207 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Keeps the offset that every line of a document starts at, updated
+*	from the document's own insert and remove events, so that finding the
+*	line an offset is on, or where a line starts, takes a binary search
+*	instead of counting the newlines in a copy of the whole document.
+*	Every document has at most one, which is shared by everything that
+*	needs it through get(). Anything that keeps something for each line
+*	can be told as lines come and go through a LineListener.
+*/
+
+
+import java.util.ArrayList;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+
+public class LineIndex implements DocumentListener {
+	// The line starts are kept in an array with a gap in it at the line
+	// last edited, like the RangeList. The starts after the gap are
+	// stored without the shift that the edits since it last moved added.
+	private int[] starts = new int[64];
+	private int gapStart = 0, gapEnd = 64;
+	private int shift = 0;
+
+	private Document doc;
+	private Segment segment = new Segment();
+
+	private ArrayList<LineListener> listeners = new ArrayList<LineListener>();
+
+	private LineIndex(Document doc) {
+		this.doc = doc;
+		segment.setPartialReturn(true);
+
+		starts[0] = 0;
+		gapStart = 1;
+		insertUpdate(0, doc.getLength());
+
+		doc.addDocumentListener(this);
+		doc.putProperty(LineIndex.class, this);
+	}
+
+	public static LineIndex get(Document doc) {
+		// Returns the line index of doc, making it the first time.
+
+		Object index = doc.getProperty(LineIndex.class);
+
+		if (index instanceof LineIndex) {
+			return (LineIndex) index;
+		}
+
+		return new LineIndex(doc);
+	}
+
+	public void addLineListener(LineListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeLineListener(LineListener listener) {
+		listeners.remove(listener);
+	}
+
+	public int getLineCount() {
+		return starts.length - (gapEnd - gapStart);
+	}
+
+	public int getLineStart(int line) {
+		// Returns the offset that line starts at, the first line being 0.
+
+		return (line < gapStart) ? starts[line] :
+				starts[line + gapEnd - gapStart] + shift;
+	}
+
+	public int getLineEnd(int line) {
+		// Returns the offset of the newline at the end of line,
+		// or the length of the document for the last line.
+
+		if (line + 1 < getLineCount()) {
+			return getLineStart(line + 1) - 1;
+		}
+
+		return doc.getLength();
+	}
+
+	public int getLineOf(int offset) {
+		// Returns the line that offset is on, the first line being 0.
+
+		int low = 0, high = getLineCount() - 1;
+
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+
+			if (getLineStart(mid) <= offset) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		return low;
+	}
+
+	public void insertUpdate(DocumentEvent e) {
+		insertUpdate(e.getOffset(), e.getLength());
+	}
+
+	private void insertUpdate(int offset, int length) {
+		// The lines after the one the text went into move along with
+		// it, and every newline in it starts a new line.
+
+		int line = getLineOf(offset) + 1;
+		moveGap(line);
+		shift += length;
+
+		try {
+			int i = offset;
+			int end = offset + length;
+
+			while (i < end) {
+				doc.getText(i, end - i, segment);
+
+				for (int j = 0; j < segment.count; j++) {
+					if (segment.array[segment.offset + j] == '\n') {
+						ensureGap();
+						starts[gapStart++] = i + j + 1;
+					}
+				}
+
+				i += segment.count;
+			}
+		} catch (Exception e) {
+			ErrorMgr.show(e, "Error indexing the lines of the document.");
+		}
+
+		if (gapStart > line) {
+			for (int i = 0; i < listeners.size(); i++) {
+				listeners.get(i).linesInserted(line, gapStart - line);
+			}
+		}
+	}
+
+	public void removeUpdate(DocumentEvent e) {
+		// Every line starting inside of the removed text is gone,
+		// and the lines after it move back.
+
+		int offset = e.getOffset(), length = e.getLength();
+
+		int line = getLineOf(offset) + 1;
+		moveGap(line);
+		int before = gapEnd;
+
+		while (gapEnd < starts.length && starts[gapEnd] + shift <= offset + length) {
+			gapEnd++;
+		}
+
+		shift -= length;
+
+		if (gapEnd > before) {
+			for (int i = 0; i < listeners.size(); i++) {
+				listeners.get(i).linesRemoved(line, gapEnd - before);
+			}
+		}
+	}
+
+	public void changedUpdate(DocumentEvent e) {
+		// Attribute changes don't move any lines.
+	}
+
+	private void moveGap(int index) {
+		// Moves the gap to just before line index, adding the shift
+		// to the line starts that end up before it.
+
+		while (gapStart > index) {
+			gapStart--;
+			gapEnd--;
+			starts[gapEnd] = starts[gapStart] - shift;
+		}
+
+		while (gapStart < index) {
+			starts[gapStart] = starts[gapEnd] + shift;
+			gapStart++;
+			gapEnd++;
+		}
+	}
+
+	private void ensureGap() {
+		if (gapStart < gapEnd) {
+			return;
+		}
+
+		int after = starts.length - gapEnd;
+		int[] s = new int[starts.length * 2];
+
+		System.arraycopy(starts, 0, s, 0, gapStart);
+		System.arraycopy(starts, gapEnd, s, s.length - after, after);
+
+		gapEnd = s.length - after;
+		starts = s;
+	}
+}
@@ -0,0 +1,15 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Told by a LineIndex when lines are added to or removed from its
+*	document, as part of the edit that did it. count lines start at line,
+*	the first line being 0, which were added or are gone.
+*/
+
+
+public interface LineListener {
+	public void linesInserted(int line, int count);
+	public void linesRemoved(int line, int count);
+}
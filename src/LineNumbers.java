@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-08-25
-*	Modified: 2022-01-01
+*	Modified: 2026-10-18
 *
 *	Handles drawing the line numbers
 *	to the left of the editor pane.
@@ -9,7 +9,6 @@
 
 
 import javax.swing.JComponent;
-import javax.swing.SwingUtilities;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 
@@ -20,12 +19,9 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.FontMetrics;
 
-import java.awt.event.KeyListener;
-import java.awt.event.KeyEvent;
-
 
 @SuppressWarnings("serial")
-public class LineNumbers extends JComponent implements KeyListener, Runnable {
+public class LineNumbers extends JComponent implements EditListener {
 	private EditorPane editor;
 	private JScrollBar scrollBar;
 	private JScrollPane scroller;
@@ -37,7 +33,7 @@ public class LineNumbers extends JComponent implements KeyListener, Runnable {
 		this.scroller = scroller;
 		this.scrollBar = scroller.getVerticalScrollBar();
 
-		this.editor.addKeyListener(this);
+		EditBus.get(editor.getTextPane()).addEditListener(this);
 
 		updateOptions();
 	}
@@ -77,22 +73,14 @@ public class LineNumbers extends JComponent implements KeyListener, Runnable {
 		Defaults.TOOLKIT.sync();
 	}
 
-	public void keyPressed(KeyEvent ke) {
-		SwingUtilities.invokeLater(this);
-	}
-
-	public void run() {
-		recalculateLines();
+	public void editsMade(EditBatch batch) {
+		if (batch.hasEdits()) {
+			recalculateLines();
+		}
 	}
 
 	public void recalculateLines() {
-		int newLines = 1;
-		String string = editor.getText();
-		for (int i = 0; i < string.length(); i++) {
-			if (string.charAt(i) == '\n') {
-				newLines++;
-			}
-		}
+		int newLines = LineIndex.get(editor.getStyledDocument()).getLineCount();
 
 		if (lines != newLines) {
 			setLines(newLines);
@@ -107,7 +95,4 @@ public class LineNumbers extends JComponent implements KeyListener, Runnable {
 		revalidate();
 		repaint();
 	}
-
-	public void keyReleased(KeyEvent ke) {}
-	public void keyTyped(KeyEvent ke) {}
 }
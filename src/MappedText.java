@@ -0,0 +1,369 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	The bytes of a file mapped into memory, read-only, for viewing files
+*	too large to open in the editor. Nothing is copied onto the heap but
+*	the text that is asked for. The lines are indexed on a thread of their
+*	own, keeping the start of every STRIDE'th line, so the index is a small
+*	fraction of the file no matter its size. Until the index gets to a line
+*	it is guessed from the lengths of the lines indexed so far, so nothing
+*	asked for on the event thread has to wait for the file to be scanned.
+*
+*	Offsets are byte offsets into the file, and lines start from 0. Like
+*	the editor, a newline at the very end of the file doesn't start a line.
+*/
+
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.StandardOpenOption;
+
+import java.util.Arrays;
+
+
+public class MappedText {
+	// A single mapping can't be larger than 2GB, so the file is
+	// mapped in regions of this size.
+	private static final int REGION_BITS = 30;
+	private static final long REGION_MASK = (1L << REGION_BITS) - 1;
+
+	private static final int STRIDE = 1024;
+
+	// How much is read at once when scanning the file.
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	private File file;
+	private MappedByteBuffer[] regions;
+	private long length;
+
+	// How far the indexer has got, which is replaced as a whole each
+	// time it gets further, so it can be read from any thread.
+	private volatile Index index = new Index(new long[] {0}, 1, 0, 0);
+	private volatile boolean closed = false;
+
+	public MappedText(File file) throws IOException {
+		this.file = file;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+						StandardOpenOption.READ)) {
+			length = channel.size();
+			regions = new MappedByteBuffer[(int)((length + REGION_MASK) >>> REGION_BITS)];
+
+			for (int i = 0; i < regions.length; i++) {
+				long start = (long) i << REGION_BITS;
+				regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(REGION_MASK + 1, length - start));
+			}
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long length() {
+		return length;
+	}
+
+	public byte get(long offset) {
+		return regions[(int)(offset >>> REGION_BITS)].get((int)(offset & REGION_MASK));
+	}
+
+	public void getBytes(long offset, byte[] dest, int destStart, int count) {
+		// Copies count bytes from offset into dest, a region at a time.
+
+		while (count > 0) {
+			ByteBuffer region = regions[(int)(offset >>> REGION_BITS)].duplicate();
+			int start = (int)(offset & REGION_MASK);
+			int n = Math.min(count, region.limit() - start);
+
+			region.position(start);
+			region.get(dest, destStart, n);
+
+			offset += n;
+			destStart += n;
+			count -= n;
+		}
+	}
+
+	public String getString(long start, long end) {
+		// Decodes the text from start to end. Only for text that fits
+		// in a String, which is up to the caller to make sure of.
+
+		byte[] bytes = new byte[(int)(end - start)];
+		getBytes(start, bytes, 0, bytes.length);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public void startIndexing(final Runnable done) {
+		// Indexes the lines on a thread of its own, then runs done on
+		// that thread, unless the text was closed first.
+
+		Thread indexer = new Thread(new Runnable() {
+			public void run() {
+				scan();
+
+				if (!closed) {
+					done.run();
+				}
+			}
+		}, "Mapped Text Indexer");
+
+		indexer.setDaemon(true);
+		indexer.setPriority(Thread.MIN_PRIORITY);
+		indexer.start();
+	}
+
+	public void close() {
+		// Stops the indexing, when the text is no longer shown.
+
+		closed = true;
+	}
+
+	private void scan() {
+		// Counts the newlines a block at a time, publishing how far it
+		// has got after each one.
+
+		byte[] block = new byte[BLOCK_SIZE];
+		long[] checkpoints = new long[64];
+		int checkpointCount = 1;
+		long scanned = 0;
+		int newlines = 0;
+
+		while (scanned < length && !closed) {
+			int n = (int) Math.min(BLOCK_SIZE, length - scanned);
+			getBytes(scanned, block, 0, n);
+
+			for (int i = 0; i < n; i++) {
+				if (block[i] == '\n') {
+					newlines++;
+
+					if (newlines % STRIDE == 0) {
+						// A new array is made when it grows, so one
+						// already handed out never changes.
+						if (checkpointCount == checkpoints.length) {
+							checkpoints = Arrays.copyOf(checkpoints,
+									checkpointCount * 2);
+						}
+						checkpoints[checkpointCount++] = scanned + i + 1;
+					}
+				}
+			}
+
+			scanned += n;
+			index = new Index(checkpoints, checkpointCount, scanned, newlines);
+		}
+	}
+
+	private static final class Index {
+		// checkpoints[k] is the offset of line k * STRIDE, for k up to
+		// count. Every newline before scanned has been counted in
+		// newlines.
+
+		private final long[] checkpoints;
+		private final int count;
+		private final long scanned;
+		private final int newlines;
+
+		private Index(long[] checkpoints, int count, long scanned, int newlines) {
+			this.checkpoints = checkpoints;
+			this.count = count;
+			this.scanned = scanned;
+			this.newlines = newlines;
+		}
+
+		private double lineLength() {
+			// The average length of the lines indexed so far.
+
+			return (newlines == 0) ? 80 : (double) scanned / newlines;
+		}
+	}
+
+	public boolean isIndexed() {
+		return index.scanned == length;
+	}
+
+	public int getLineCount() {
+		// The number of lines, or a guess from the lines indexed so far
+		// if the file hasn't been indexed yet.
+
+		Index idx = index;
+
+		if (idx.scanned == length) {
+			if (length == 0) {
+				return 1;
+			}
+
+			return (get(length - 1) == '\n') ? idx.newlines : idx.newlines + 1;
+		}
+
+		return (int) Math.min(Integer.MAX_VALUE,
+				idx.newlines + (length - idx.scanned) / idx.lineLength());
+	}
+
+	public long getLineStart(int line) {
+		// The offset of the start of line, or the length of the file
+		// if there aren't that many lines. Past what has been indexed,
+		// it is the start of the line nearest to where it should be.
+
+		if (line <= 0) {
+			return 0;
+		}
+
+		Index idx = index;
+
+		if (line > idx.newlines) {
+			if (idx.scanned == length) {
+				return length;
+			}
+
+			long guess = idx.scanned + (long)((line - idx.newlines) * idx.lineLength());
+			if (guess >= length) {
+				return length;
+			}
+
+			long newline = indexOf((byte) '\n', guess - 1, length);
+			return (newline == -1) ? length : newline + 1;
+		}
+
+		long offset = idx.checkpoints[line / STRIDE];
+
+		for (int at = (line / STRIDE) * STRIDE; at < line; at++) {
+			offset = indexOf((byte) '\n', offset, length) + 1;
+		}
+
+		return offset;
+	}
+
+	public long getLineEnd(long lineStart) {
+		// The offset of the end of the line starting at lineStart,
+		// not counting its newline, or a '\r' before it.
+
+		long offset = indexOf((byte) '\n', lineStart, length);
+		if (offset == -1) {
+			offset = length;
+		}
+
+		if (offset > lineStart && get(offset - 1) == '\r') {
+			offset--;
+		}
+
+		return offset;
+	}
+
+	public int getLineOf(long offset) {
+		// The line that offset is on, guessed like getLineStart() is
+		// past what has been indexed.
+
+		Index idx = index;
+
+		if (offset > idx.scanned) {
+			return (int) Math.min(getLineCount() - 1,
+					idx.newlines + (offset - idx.scanned) / idx.lineLength());
+		}
+
+		int k = Arrays.binarySearch(idx.checkpoints, 0, idx.count, offset);
+		if (k < 0) {
+			k = -k - 2;
+		}
+
+		int line = k * STRIDE;
+		long at = idx.checkpoints[k];
+
+		while (true) {
+			at = indexOf((byte) '\n', at, offset);
+			if (at == -1) {
+				return line;
+			}
+
+			line++;
+			at++;
+		}
+	}
+
+	public long indexOf(byte b, long from, long to) {
+		// The offset of the first b from from up to to, or -1. It is
+		// read a block at a time, starting small since lines are.
+
+		byte[] block = new byte[256];
+		from = Math.max(from, 0);
+
+		while (from < to) {
+			int n = (int) Math.min(block.length, to - from);
+			getBytes(from, block, 0, n);
+
+			for (int i = 0; i < n; i++) {
+				if (block[i] == b) {
+					return from + i;
+				}
+			}
+
+			from += n;
+			if (block.length < BLOCK_SIZE) {
+				block = new byte[block.length * 4];
+			}
+		}
+
+		return -1;
+	}
+
+	public long find(byte[] needle, long from, long to, boolean ignoreCase) {
+		// The offset of the first match for needle from from that starts
+		// before to, or -1 if there is none. Case is only ignored for
+		// ASCII letters. This can take a while, so it is done off the
+		// event thread, and it stops with -1 if the thread is interrupted.
+
+		if (needle.length == 0) {
+			return -1;
+		}
+
+		// Each block overlaps the last by all but a byte of the needle,
+		// so a match across two blocks is found in the second.
+		byte[] block = new byte[BLOCK_SIZE + needle.length - 1];
+		to = Math.min(to, length - needle.length + 1);
+
+		for (long start = from; start < to; start += BLOCK_SIZE) {
+			if (Thread.currentThread().isInterrupted()) {
+				return -1;
+			}
+
+			int starts = (int) Math.min(BLOCK_SIZE, to - start);
+			getBytes(start, block, 0, starts + needle.length - 1);
+
+			for (int i = 0; i < starts; i++) {
+				int j = 0;
+
+				while (j < needle.length && equal(block[i + j], needle[j], ignoreCase)) {
+					j++;
+				}
+
+				if (j == needle.length) {
+					return start + i;
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	private static boolean equal(byte a, byte b, boolean ignoreCase) {
+		if (a == b) {
+			return true;
+		} else if (!ignoreCase) {
+			return false;
+		}
+
+		return (a | 0x20) == (b | 0x20) && (a | 0x20) >= 'a' && (a | 0x20) <= 'z';
+	}
+}
@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-08-20
-*	Modified: 2021-12-22
+*	Modified: 2026-10-18
 *
 *	Main class for the Brocessing editor.
 */
@@ -10,6 +10,7 @@
 import com.formdev.flatlaf.FlatDarkLaf;
 import com.formdev.flatlaf.FlatLightLaf;
 
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
 import java.io.File;
@@ -22,6 +23,12 @@ public class PCIE {
 		setLAF();
 		Defaults.init(args);
 		gui = new GUI(parseFiles(args));
+
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				gui.recoverJournals();
+			}
+		});
 	}
 
 	public static void setLAF() {
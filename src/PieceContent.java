@@ -0,0 +1,732 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Document content kept as a piece table, for very large files. The text
+*	is never moved once it is stored; every edit only adds text to the end
+*	of an append only buffer and rebuilds the few pieces around it, in a
+*	balanced tree of pieces that is never changed in place. Inserting or
+*	removing anywhere takes O(log n), however far it is from the last edit,
+*	and taking a snapshot of the whole text is just keeping the root.
+*/
+
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+
+
+public class PieceContent implements AbstractDocument.Content {
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	// Inserted text is copied into chunks that are filled up and never
+	// changed, so every piece can point straight into one.
+	private char[] chunk = new char[CHUNK_SIZE];
+	private int chunkUsed = 0;
+
+	// Where the last insert ended, so that typing can grow the piece
+	// it typed last instead of adding a piece for every character.
+	private int lastEnd = -1;
+
+	private Node root = null;
+
+	// Positions are kept sorted in an array with a gap in it at the last
+	// edit, like the RangeList, so an edit only touches the positions
+	// between the gap and where it is. The positions after the gap are
+	// stored without the shift that the edits since then added.
+	private Mark[] marks = new Mark[16];
+	private int gapStart = 0, gapEnd = 16;
+	private int shift = 0;
+	private ReferenceQueue<Pos> dropped = new ReferenceQueue<Pos>();
+	private int droppedCount = 0;
+
+	public PieceContent() {
+		// Every document ends in a newline that can't be removed.
+
+		try {
+			insertString(0, "\n");
+		} catch (BadLocationException e) {
+			// Can't happen on an empty content.
+		}
+
+		lastEnd = -1;
+	}
+
+	public int length() {
+		return total(root);
+	}
+
+	public Snapshot getSnapshot() {
+		// Returns the text as it is now, which won't change
+		// however the content is edited afterwards.
+
+		return new Snapshot(root);
+	}
+
+	public UndoableEdit insertString(int where, String str)
+					throws BadLocationException {
+		if (where < 0 || where > length()) {
+			throw new BadLocationException("Invalid insert", where);
+		}
+
+		int n = str.length();
+		if (n == 0) {
+			return null;
+		}
+
+		if (chunk.length - chunkUsed < n) {
+			chunk = new char[Math.max(CHUNK_SIZE, n)];
+			chunkUsed = 0;
+			lastEnd = -1;
+		}
+
+		str.getChars(0, n, chunk, chunkUsed);
+
+		Node[] halves = split(root, where);
+
+		if (where == lastEnd && halves[0] != null && endsAt(halves[0], chunk, chunkUsed)) {
+			root = join(growLast(halves[0], n), halves[1]);
+		} else {
+			root = join(halves[0], chunk, chunkUsed, n, halves[1]);
+		}
+
+		chunkUsed += n;
+		lastEnd = where + n;
+
+		insertMarks(where, n);
+
+		return new InsertEdit(where, n);
+	}
+
+	public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+		if (where < 0 || nitems < 0 || where + nitems >= length()) {
+			throw new BadLocationException("Invalid remove", where);
+		}
+
+		if (nitems == 0) {
+			return null;
+		}
+
+		RemoveEdit edit = new RemoveEdit(where, nitems);
+		edit.takeOut();
+
+		return edit;
+	}
+
+	private void removePieces(int where, int nitems) {
+		Node[] before = split(root, where);
+		Node[] after = split(before[1], nitems);
+
+		root = join(before[0], after[1]);
+		lastEnd = -1;
+
+		removeMarks(where, nitems);
+	}
+
+	public String getString(int where, int len) throws BadLocationException {
+		Segment s = new Segment();
+		getChars(where, len, s);
+
+		return new String(s.array, s.offset, s.count);
+	}
+
+	public void getChars(int where, int len, Segment txt)
+					throws BadLocationException {
+		getChars(root, where, len, txt);
+	}
+
+	private static void getChars(Node root, int where, int len, Segment txt)
+					throws BadLocationException {
+		// Text inside of one piece is handed back without being copied.
+		// Text spanning pieces is only copied if the segment doesn't
+		// allow just the first piece of it to be handed back.
+
+		if (where < 0 || len < 0 || where + len > total(root)) {
+			throw new BadLocationException("Invalid range", where);
+		}
+
+		Node n = root;
+		int offset = where;
+
+		while (n != null) {
+			int left = total(n.left);
+
+			if (offset < left) {
+				n = n.left;
+			} else if (offset < left + n.length || n.right == null) {
+				offset -= left;
+				break;
+			} else {
+				offset -= left + n.length;
+				n = n.right;
+			}
+		}
+
+		if (n == null || len == 0) {
+			txt.array = new char[0];
+			txt.offset = 0;
+			txt.count = 0;
+		} else if (offset + len <= n.length || txt.isPartialReturn()) {
+			txt.array = n.buf;
+			txt.offset = n.start + offset;
+			txt.count = Math.min(len, n.length - offset);
+		} else {
+			char[] copy = new char[len];
+			copy(root, where, where + len, copy, 0);
+
+			txt.array = copy;
+			txt.offset = 0;
+			txt.count = len;
+		}
+	}
+
+	private static void copy(Node n, int from, int to, char[] dest, int at) {
+		// Copies the text from from to to in the tree n into dest.
+
+		while (n != null && from < to) {
+			int left = total(n.left);
+			int right = left + n.length;
+
+			if (from < left) {
+				int end = Math.min(to, left);
+				copy(n.left, from, end, dest, at);
+				at += end - from;
+				from = end;
+			}
+
+			if (from < to && from < right) {
+				int end = Math.min(to, right);
+				System.arraycopy(n.buf, n.start + from - left, dest, at,
+								end - from);
+				at += end - from;
+				from = end;
+			}
+
+			from -= right;
+			to -= right;
+			n = n.right;
+		}
+	}
+
+	public Position createPosition(int offset) throws BadLocationException {
+		if (offset < 0 || offset > length()) {
+			throw new BadLocationException("Invalid position", offset);
+		}
+
+		// Positions at the same offset always stay together,
+		// so one is shared between them. One that an edit took
+		// out along with its text isn't, since undoing the edit
+		// puts it back where it was instead.
+		int i = firstMarkAtOrAfter(offset);
+		if (i < markCount() && markOffset(i) == offset && !markAt(i).taken) {
+			Pos pos = markAt(i).get();
+
+			if (pos != null) {
+				return pos;
+			}
+		}
+
+		purge();
+		i = firstMarkAtOrAfter(offset);
+		moveGap(i);
+		ensureGap();
+
+		Pos pos = new Pos();
+		pos.mark = new Mark(pos, dropped);
+		pos.mark.offset = offset;
+		pos.mark.slot = gapStart;
+		marks[gapStart++] = pos.mark;
+
+		return pos;
+	}
+
+	private void insertMarks(int where, int length) {
+		// Positions after where move along with the text. So do
+		// positions at where, other than ones at the very start.
+
+		moveGap(firstMarkAtOrAfter(Math.max(where, 1)));
+		shift += length;
+	}
+
+	private void removeMarks(int where, int length) {
+		// Positions inside of the removed text end up where it was,
+		// and positions after it move back.
+
+		moveGap(firstMarkAtOrAfter(where + 1));
+
+		while (gapEnd < marks.length && marks[gapEnd].offset + shift < where + length) {
+			Mark m = marks[gapEnd];
+			marks[gapEnd++] = null;
+
+			m.offset = where;
+			m.slot = gapStart;
+			marks[gapStart++] = m;
+		}
+
+		shift -= length;
+	}
+
+	private int markCount() {
+		return marks.length - (gapEnd - gapStart);
+	}
+
+	private Mark markAt(int i) {
+		return (i < gapStart) ? marks[i] : marks[i + gapEnd - gapStart];
+	}
+
+	private int markOffset(int i) {
+		return (i < gapStart) ? marks[i].offset :
+				marks[i + gapEnd - gapStart].offset + shift;
+	}
+
+	private int firstMarkAtOrAfter(int offset) {
+		int low = 0, high = markCount();
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (markOffset(mid) < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	private void moveGap(int index) {
+		while (gapStart > index) {
+			gapStart--;
+			gapEnd--;
+
+			Mark m = marks[gapStart];
+			marks[gapStart] = null;
+			m.offset -= shift;
+			m.slot = gapEnd;
+			marks[gapEnd] = m;
+		}
+
+		while (gapStart < index) {
+			Mark m = marks[gapEnd];
+			marks[gapEnd] = null;
+			m.offset += shift;
+			m.slot = gapStart;
+			marks[gapStart] = m;
+
+			gapStart++;
+			gapEnd++;
+		}
+	}
+
+	private void ensureGap() {
+		if (gapStart < gapEnd) {
+			return;
+		}
+
+		int after = marks.length - gapEnd;
+		Mark[] m = new Mark[marks.length * 2];
+
+		System.arraycopy(marks, 0, m, 0, gapStart);
+		System.arraycopy(marks, gapEnd, m, m.length - after, after);
+
+		gapEnd = m.length - after;
+		marks = m;
+
+		for (int i = gapEnd; i < marks.length; i++) {
+			marks[i].slot = i;
+		}
+	}
+
+	private void purge() {
+		// Drops the marks of positions that are no longer used, once
+		// there are enough of them to be worth going through the array.
+
+		while (dropped.poll() != null) {
+			droppedCount++;
+		}
+
+		if (droppedCount < 64 || droppedCount < markCount() / 4) {
+			return;
+		}
+
+		int count = 0;
+		for (int i = 0; i < gapStart; i++) {
+			if (marks[i].get() != null) {
+				marks[i].slot = count;
+				marks[count++] = marks[i];
+			}
+		}
+
+		int kept = count;
+		for (int i = count; i < gapStart; i++) {
+			marks[i] = null;
+		}
+		gapStart = kept;
+
+		count = marks.length;
+		for (int i = marks.length - 1; i >= gapEnd; i--) {
+			if (marks[i].get() != null) {
+				count--;
+				marks[i].slot = count;
+				marks[count] = marks[i];
+			}
+		}
+
+		for (int i = gapEnd; i < count; i++) {
+			marks[i] = null;
+		}
+		gapEnd = count;
+
+		droppedCount = 0;
+	}
+
+	private final class Pos implements Position {
+		private Mark mark;
+
+		public int getOffset() {
+			return (mark.slot < gapStart) ? mark.offset : mark.offset + shift;
+		}
+
+		@Override
+		public String toString() {
+			return Integer.toString(getOffset());
+		}
+	}
+
+	private static final class Mark extends WeakReference<Pos> {
+		private int offset, slot;
+		private boolean taken = false;
+
+		private Mark(Pos pos, ReferenceQueue<Pos> queue) {
+			super(pos, queue);
+		}
+	}
+
+	// The tree of pieces. A node is never changed once it is made; an
+	// edit makes new nodes for the path down to it and shares the rest.
+
+	private static final class Node {
+		private final char[] buf;
+		private final int start, length;
+		private final Node left, right;
+		private final int height, total;
+
+		private Node(char[] buf, int start, int length, Node left, Node right) {
+			this.buf = buf;
+			this.start = start;
+			this.length = length;
+			this.left = left;
+			this.right = right;
+
+			height = Math.max(height(left), height(right)) + 1;
+			total = total(left) + length + total(right);
+		}
+	}
+
+	private static int height(Node n) {
+		return (n == null) ? 0 : n.height;
+	}
+
+	private static int total(Node n) {
+		return (n == null) ? 0 : n.total;
+	}
+
+	private static Node[] split(Node n, int offset) {
+		// Splits n into the text before offset and the text from it on,
+		// cutting the piece that offset is inside of in two.
+
+		if (n == null) {
+			return new Node[] {null, null};
+		}
+
+		int left = total(n.left);
+
+		if (offset <= left) {
+			Node[] halves = split(n.left, offset);
+			halves[1] = join(halves[1], n.buf, n.start, n.length, n.right);
+			return halves;
+		} else if (offset >= left + n.length) {
+			Node[] halves = split(n.right, offset - left - n.length);
+			halves[0] = join(n.left, n.buf, n.start, n.length, halves[0]);
+			return halves;
+		}
+
+		int cut = offset - left;
+
+		return new Node[] {
+			join(n.left, n.buf, n.start, cut, null),
+			join(null, n.buf, n.start + cut, n.length - cut, n.right)
+		};
+	}
+
+	private static Node join(Node l, char[] buf, int start, int length, Node r) {
+		// Returns a balanced tree of l, then the piece, then r.
+
+		if (height(l) > height(r) + 1) {
+			return balance(l.buf, l.start, l.length, l.left,
+					join(l.right, buf, start, length, r));
+		} else if (height(r) > height(l) + 1) {
+			return balance(r.buf, r.start, r.length,
+					join(l, buf, start, length, r.left), r.right);
+		}
+
+		return new Node(buf, start, length, l, r);
+	}
+
+	private static Node join(Node l, Node r) {
+		// Returns a balanced tree of l then r.
+
+		if (l == null) {
+			return r;
+		} else if (r == null) {
+			return l;
+		}
+
+		Node last = l;
+		while (last.right != null) {
+			last = last.right;
+		}
+
+		return join(removeLast(l), last.buf, last.start, last.length, r);
+	}
+
+	private static Node removeLast(Node n) {
+		if (n.right == null) {
+			return n.left;
+		}
+
+		return balance(n.buf, n.start, n.length, n.left, removeLast(n.right));
+	}
+
+	private static boolean endsAt(Node n, char[] buf, int end) {
+		// Returns true if the last piece of n ends at end in buf.
+
+		while (n.right != null) {
+			n = n.right;
+		}
+
+		return n.buf == buf && n.start + n.length == end;
+	}
+
+	private static Node growLast(Node n, int length) {
+		// Returns n with its last piece made length longer.
+
+		if (n.right == null) {
+			return new Node(n.buf, n.start, n.length + length, n.left, null);
+		}
+
+		return new Node(n.buf, n.start, n.length, n.left, growLast(n.right, length));
+	}
+
+	private static Node balance(char[] buf, int start, int length, Node l, Node r) {
+		// Makes a node of the piece with l and r under it, rotating
+		// it if their heights are more than one apart.
+
+		if (height(l) > height(r) + 1) {
+			if (height(l.left) < height(l.right)) {
+				l = rotateLeft(l);
+			}
+
+			return new Node(l.buf, l.start, l.length, l.left,
+					new Node(buf, start, length, l.right, r));
+		} else if (height(r) > height(l) + 1) {
+			if (height(r.right) < height(r.left)) {
+				r = rotateRight(r);
+			}
+
+			return new Node(r.buf, r.start, r.length,
+					new Node(buf, start, length, l, r.left), r.right);
+		}
+
+		return new Node(buf, start, length, l, r);
+	}
+
+	private static Node rotateLeft(Node n) {
+		Node r = n.right;
+
+		return new Node(r.buf, r.start, r.length,
+			new Node(n.buf, n.start, n.length, n.left, r.left), r.right);
+	}
+
+	private static Node rotateRight(Node n) {
+		Node l = n.left;
+
+		return new Node(l.buf, l.start, l.length, l.left,
+			new Node(n.buf, n.start, n.length, l.right, n.right));
+	}
+
+	public static final class Snapshot implements CharSequence {
+		// The text of the content at one moment. It can be read from
+		// any thread, since nothing it points to is ever changed.
+		// Reading it a char at a time goes down the tree every time,
+		// so it is best read through subSequence() or getChars().
+
+		private final Node root;
+
+		private Snapshot(Node root) {
+			this.root = root;
+		}
+
+		public int length() {
+			return total(root);
+		}
+
+		public char charAt(int index) {
+			try {
+				Segment s = new Segment();
+				getChars(index, 1, s);
+
+				return s.array[s.offset];
+			} catch (BadLocationException e) {
+				throw new IndexOutOfBoundsException(e.getMessage());
+			}
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			try {
+				return getString(start, end - start);
+			} catch (BadLocationException e) {
+				throw new IndexOutOfBoundsException(e.getMessage());
+			}
+		}
+
+		@Override
+		public String toString() {
+			return subSequence(0, length()).toString();
+		}
+
+		public void getChars(int where, int len, Segment txt)
+						throws BadLocationException {
+			PieceContent.getChars(root, where, len, txt);
+		}
+
+		public String getString(int where, int len) throws BadLocationException {
+			Segment s = new Segment();
+			getChars(where, len, s);
+
+			return new String(s.array, s.offset, s.count);
+		}
+	}
+
+	// Undoing an insert removes its text again, and undoing a remove puts
+	// back the pieces that were taken out, which still hold its text. The
+	// positions inside of the text are put back where they were, as the
+	// GapContent does, so that the elements the document undoes along
+	// with the text get their old offsets back. Positions made after the
+	// edit aren't among them, even at the same offset, and move the same
+	// way they would for any insert.
+
+	@SuppressWarnings("serial")
+	private abstract class TextEdit extends AbstractUndoableEdit {
+		private int offset, length;
+		private Node text = null;
+		private Pos[] positions = null;
+		private int[] offsets = null;
+
+		private TextEdit(int offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+
+		protected void takeOut() {
+			int first = firstMarkAtOrAfter(offset);
+			int last = firstMarkAtOrAfter(offset + length + 1);
+
+			positions = new Pos[last - first];
+			offsets = new int[last - first];
+
+			for (int i = first; i < last; i++) {
+				positions[i - first] = markAt(i).get();
+				offsets[i - first] = markOffset(i);
+				markAt(i).taken = true;
+			}
+
+			text = split(split(root, offset)[1], length)[0];
+			removePieces(offset, length);
+		}
+
+		protected void putBack() {
+			insertPieces(offset, text);
+			restorePositions(positions, offsets);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private class InsertEdit extends TextEdit {
+		private InsertEdit(int offset, int length) {
+			super(offset, length);
+		}
+
+		@Override
+		public void undo() throws CannotUndoException {
+			super.undo();
+			takeOut();
+		}
+
+		@Override
+		public void redo() throws CannotRedoException {
+			super.redo();
+			putBack();
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private class RemoveEdit extends TextEdit {
+		private RemoveEdit(int offset, int length) {
+			super(offset, length);
+		}
+
+		@Override
+		public void undo() throws CannotUndoException {
+			super.undo();
+			putBack();
+		}
+
+		@Override
+		public void redo() throws CannotRedoException {
+			super.redo();
+			takeOut();
+		}
+	}
+
+	private void insertPieces(int where, Node text) {
+		Node[] halves = split(root, where);
+		root = join(join(halves[0], text), halves[1]);
+		lastEnd = -1;
+
+		insertMarks(where, total(text));
+	}
+
+	private void restorePositions(Pos[] positions, int[] offsets) {
+		// Takes each position out of the array and puts
+		// it back in where it was, keeping it sorted.
+
+		for (int i = 0; i < positions.length; i++) {
+			Pos pos = positions[i];
+			if (pos == null) {
+				continue;
+			}
+
+			int slot = pos.mark.slot;
+			moveGap(((slot < gapStart) ? slot : slot - (gapEnd - gapStart)) + 1);
+			marks[--gapStart] = null;
+
+			moveGap(firstMarkAtOrAfter(offsets[i]));
+			pos.mark.offset = offsets[i];
+			pos.mark.taken = false;
+			pos.mark.slot = gapStart;
+			marks[gapStart++] = pos.mark;
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	A sorted list of ranges that don't overlap, such as the strings or
+*	comments in a document. The ranges are kept in primitive arrays with a
+*	gap in them at the last place edited, so looking up an offset takes a
+*	binary search, and an edit only has to shift the ranges between the
+*	gap and where the edit is instead of every range after it.
+*	Each range can also carry a value, such as the style it is painted in.
+*/
+
+
+public class RangeList {
+	// Ranges are stored as a start and an end, the end being exclusive.
+	// The ranges after the gap are stored without the shift that the
+	// edits since the gap was last moved added to them.
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int[] values = new int[16];
+	private int gapStart = 0, gapEnd = 16;
+	private int shift = 0;
+
+	public int size() {
+		return starts.length - (gapEnd - gapStart);
+	}
+
+	public void clear() {
+		gapStart = 0;
+		gapEnd = starts.length;
+		shift = 0;
+	}
+
+	public int getStart(int i) {
+		return (i < gapStart) ? starts[i] : starts[i + gapEnd - gapStart] + shift;
+	}
+
+	public int getEnd(int i) {
+		// Returns the end of range i, exclusive.
+
+		return (i < gapStart) ? ends[i] : ends[i + gapEnd - gapStart] + shift;
+	}
+
+	public int getValue(int i) {
+		return (i < gapStart) ? values[i] : values[i + gapEnd - gapStart];
+	}
+
+	public Range get(int i) {
+		int start = getStart(i);
+		return new Range(start, getEnd(i) - start);
+	}
+
+	public void add(int start, int end) {
+		add(start, end, 0);
+	}
+
+	public void add(int start, int end, int value) {
+		// Adds a range after every other range in the list.
+
+		moveGap(size());
+		ensureGap(1);
+
+		starts[gapStart] = start;
+		ends[gapStart] = end;
+		values[gapStart] = value;
+		gapStart++;
+	}
+
+	public void replace(int from, int to, RangeList list) {
+		// Replaces ranges from (inclusive) to to (exclusive) with the
+		// ranges in list.
+
+		moveGap(to);
+		gapStart = from;
+
+		int count = list.size();
+		ensureGap(count);
+
+		for (int i = 0; i < count; i++) {
+			starts[gapStart] = list.getStart(i);
+			ends[gapStart] = list.getEnd(i);
+			values[gapStart] = list.getValue(i);
+			gapStart++;
+		}
+	}
+
+	public void replace(int from, int to, int start, int end) {
+		// Replaces ranges from (inclusive) to to (exclusive) with
+		// the single range from start to end.
+
+		moveGap(to);
+		gapStart = from;
+		ensureGap(1);
+
+		starts[gapStart] = start;
+		ends[gapStart] = end;
+		values[gapStart] = 0;
+		gapStart++;
+	}
+
+	public void union(int start, int end) {
+		// Adds the range from start to end, merging it with
+		// any ranges it overlaps or touches.
+
+		int from = firstEndingAfter(start - 1);
+		int to = firstAtOrAfter(end + 1);
+
+		if (from < to) {
+			start = Math.min(start, getStart(from));
+			end = Math.max(end, getEnd(to - 1));
+		}
+
+		replace(from, to, start, end);
+	}
+
+	public void subtract(int start, int end) {
+		// Removes everything from start to end, cutting the
+		// ranges on either side of it short.
+
+		int from = firstEndingAfter(start);
+		int to = firstAtOrAfter(end);
+
+		if (from >= to) {
+			return;
+		}
+
+		int before = getStart(from);
+		int after = getEnd(to - 1);
+
+		RangeList pieces = new RangeList();
+		if (before < start) {
+			pieces.add(before, start, getValue(from));
+		}
+
+		if (after > end) {
+			pieces.add(end, after, getValue(to - 1));
+		}
+
+		replace(from, to, pieces);
+	}
+
+	public int firstAtOrAfter(int offset) {
+		// Returns the index of the first range starting at or
+		// after offset, or size() if there isn't one.
+
+		int low = 0, high = size();
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (getStart(mid) < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	public int firstEndingAfter(int offset) {
+		// Returns the index of the first range that ends after offset,
+		// which is the first range that could overlap anything from
+		// offset on. Ends are sorted since ranges don't overlap.
+
+		int low = 0, high = size();
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (getEnd(mid) <= offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	public int indexContaining(int offset) {
+		// Returns the index of the range containing offset, or -1.
+
+		int i = firstAtOrAfter(offset + 1) - 1;
+
+		if (i >= 0 && getEnd(i) > offset) {
+			return i;
+		}
+
+		return -1;
+	}
+
+	public void insertUpdate(int offset, int length) {
+		// Ranges starting at or after offset move along with the
+		// text, and a range that offset is inside of grows.
+
+		moveGap(firstAtOrAfter(offset));
+		shift += length;
+
+		if (gapStart > 0 && ends[gapStart - 1] > offset) {
+			ends[gapStart - 1] += length;
+		}
+	}
+
+	public void removeUpdate(int offset, int length) {
+		// Ranges after the removed text move back with it, ranges that
+		// are cut by it shrink, and ranges inside of it are dropped.
+
+		moveGap(firstAtOrAfter(offset + 1));
+
+		if (gapStart > 0) {
+			ends[gapStart - 1] = afterRemove(ends[gapStart - 1], offset,
+									length);
+
+			if (ends[gapStart - 1] == starts[gapStart - 1]) {
+				gapStart--;
+			}
+		}
+
+		while (gapEnd < starts.length && starts[gapEnd] + shift < offset + length) {
+			int start = offset;
+			int end = afterRemove(ends[gapEnd] + shift, offset, length);
+			int value = values[gapEnd];
+			gapEnd++;
+
+			if (end > start) {
+				starts[gapStart] = start;
+				ends[gapStart] = end;
+				values[gapStart] = value;
+				gapStart++;
+			}
+		}
+
+		shift -= length;
+	}
+
+	private int afterRemove(int index, int offset, int length) {
+		// Returns where index ends up once length characters
+		// at offset are removed.
+
+		if (index <= offset) {
+			return index;
+		}
+
+		return Math.max(offset, index - length);
+	}
+
+	private void moveGap(int index) {
+		// Moves the gap to just before range index, adding the shift
+		// to the ranges that end up before it.
+
+		while (gapStart > index) {
+			gapStart--;
+			gapEnd--;
+			starts[gapEnd] = starts[gapStart] - shift;
+			ends[gapEnd] = ends[gapStart] - shift;
+			values[gapEnd] = values[gapStart];
+		}
+
+		while (gapStart < index) {
+			starts[gapStart] = starts[gapEnd] + shift;
+			ends[gapStart] = ends[gapEnd] + shift;
+			values[gapStart] = values[gapEnd];
+			gapStart++;
+			gapEnd++;
+		}
+	}
+
+	private void ensureGap(int count) {
+		if (gapEnd - gapStart >= count) {
+			return;
+		}
+
+		int after = starts.length - gapEnd;
+		int capacity = Math.max(starts.length * 2, gapStart + after + count);
+
+		int[] s = new int[capacity];
+		int[] e = new int[capacity];
+		int[] v = new int[capacity];
+
+		System.arraycopy(starts, 0, s, 0, gapStart);
+		System.arraycopy(ends, 0, e, 0, gapStart);
+		System.arraycopy(values, 0, v, 0, gapStart);
+		System.arraycopy(starts, gapEnd, s, capacity - after, after);
+		System.arraycopy(ends, gapEnd, e, capacity - after, after);
+		System.arraycopy(values, gapEnd, v, capacity - after, after);
+
+		starts = s;
+		ends = e;
+		values = v;
+		gapEnd = capacity - after;
+	}
+}
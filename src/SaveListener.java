@@ -0,0 +1,16 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Told on the event thread when a save started through the SaveService
+*	is over. error is null if the file was saved.
+*/
+
+
+import java.io.File;
+
+
+public interface SaveListener {
+	public void saveDone(File file, Exception error);
+}
@@ -0,0 +1,215 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Saves files on its own thread, so saving doesn't hold up the window.
+*	The text is a snapshot taken when the save is asked for, which is
+*	encoded and written to a temporary file next to the file, forced to
+*	the disk and then moved over the file in one step. A save that is cut
+*	off part way through leaves the old file as it was.
+*
+*	Everything but the writing itself happens on the event thread.
+*/
+
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+
+public class SaveService {
+	private static final int CHUNK = 64 * 1024;
+
+	// Saves are written one at a time, in the order they were asked
+	// for, so the last save of a file is the one that is kept. The
+	// thread isn't a daemon, so the program doesn't end part way
+	// through a save, and it stops when there is nothing to save.
+	private static final ExecutorService writer =
+		new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					return new Thread(r, "Save Service");
+				}
+			});
+
+	// The last save of each file that may not be done yet.
+	private static HashMap<File, Future<Boolean>> pending =
+					new HashMap<File, Future<Boolean>>();
+
+	public static Future<Boolean> save(final File file, final CharSequence text,
+						final SaveListener listener) {
+		// Writes text to file, then tells listener, if there is one.
+		// text mustn't change after this is called.
+
+		Future<Boolean> future = writer.submit(new Callable<Boolean>() {
+			public Boolean call() {
+				Exception error = null;
+
+				try {
+					write(file, text);
+				} catch (Exception e) {
+					error = e;
+				}
+
+				done(file, error, listener);
+				return error == null;
+			}
+		});
+
+		pending.put(file.getAbsoluteFile(), future);
+		return future;
+	}
+
+	private static void done(final File file, final Exception error,
+						final SaveListener listener) {
+		if (listener == null) {
+			return;
+		}
+
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				listener.saveDone(file, error);
+			}
+		});
+	}
+
+	public static void whenSaved(File dir, final Runnable then) {
+		// Runs then on the event thread once every file in dir that is
+		// being saved has been. If none are, it is run straight away.
+
+		final ArrayList<Future<Boolean>> waiting = new ArrayList<Future<Boolean>>();
+		dir = dir.getAbsoluteFile();
+
+		Iterator<File> it = pending.keySet().iterator();
+		while (it.hasNext()) {
+			File file = it.next();
+
+			if (pending.get(file).isDone()) {
+				it.remove();
+			} else if (dir.equals(file.getParentFile())) {
+				waiting.add(pending.get(file));
+			}
+		}
+
+		if (waiting.size() == 0) {
+			then.run();
+			return;
+		}
+
+		new Thread(new Runnable() {
+			public void run() {
+				for (int i = 0; i < waiting.size(); i++) {
+					try {
+						waiting.get(i).get();
+					} catch (Exception e) {
+						// The save itself reports what went wrong.
+					}
+				}
+
+				SwingUtilities.invokeLater(then);
+			}
+		}, "Save Waiter").start();
+	}
+
+	private static void write(File file, CharSequence text) throws IOException {
+		// The file always ends with a newline, which the editor
+		// doesn't show.
+
+		File temp = new File(file.getParentFile(), "." + file.getName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temp.toPath(),
+					StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			ByteBuffer bytes = ByteBuffer.allocate(CHUNK * 3 + 16);
+
+			int length = text.length();
+			int start = 0;
+
+			while (start < length) {
+				// A chunk never ends between the two halves of a
+				// surrogate pair, so each one encodes on its own.
+				int end = Math.min(start + CHUNK, length);
+				if (end < length && Character.isHighSurrogate(text.charAt(end - 1))) {
+					end--;
+				}
+
+				encoder.encode(CharBuffer.wrap(text.subSequence(start, end)),
+						bytes, false);
+				writeAll(channel, bytes);
+				start = end;
+			}
+
+			if (length == 0 || text.charAt(length - 1) != '\n') {
+				encoder.encode(CharBuffer.wrap("\n"), bytes, false);
+			}
+			encoder.encode(CharBuffer.allocate(0), bytes, true);
+			encoder.flush(bytes);
+			writeAll(channel, bytes);
+
+			channel.force(true);
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+
+		try {
+			try {
+				Files.move(temp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				// Some file systems can't, so the file is replaced
+				// the usual way there.
+				Files.move(temp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+	}
+
+	private static void writeAll(FileChannel channel, ByteBuffer bytes)
+						throws IOException {
+		bytes.flip();
+
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+
+		bytes.clear();
+	}
+}
@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-12-29
-*	Modified: 2022-01-05
+*	Modified: 2026-10-18
 *
 *	Contains methods for creating setters and getters.
 */
@@ -11,24 +11,28 @@ import java.util.ArrayList;
 
 import javax.swing.JTextPane;
 
-import javax.swing.text.StyledDocument;
+import javax.swing.text.BadLocationException;
 
 
 public class SetterAndGetter {
 	public static void generate(DocEditor docEditor) {
-		String s = getSafeText(docEditor.getEditor());
+		// A file that is only being viewed can't be changed.
+		if (docEditor.getEditor() == null) {
+			return;
+		}
+
+		CharSequence s = getSafeText(docEditor.getEditor());
 		ArrayList<Range> classes = splitIntoClasses(s);
 		int start = 0;
 		String out = "";
 
 		JTextPane pane = docEditor.getEditor().getTextPane();
-		int caret = pane.getCaretPosition();
 
 		Range r;
 		for (int i = 0; i < classes.size(); i++) {
 			r = classes.get(i);
 
-			out += s.substring(start, r.getOffset());
+			out += s.subSequence(start, r.getOffset());
 
 			ArrayList<Variable> vars = parse(s, r);
 			out += insertSettersAndGetters(s, r, vars);
@@ -36,23 +40,34 @@ public class SetterAndGetter {
 			start = r.getEnd() + 1;
 		}
 
-		out += s.substring(start);
+		out += s.subSequence(start, s.length());
+
+		// Only the setters and getters that were added are put in,
+		// and kept for undoing them.
+		TextDiff diff = new TextDiff(s.toString(), out);
+
+		// Every setter and getter is already there, so nothing changed.
+		if (diff.isEmpty()) {
+			return;
+		}
 
-		pane.setText(out);
-		pane.setCaretPosition(caret);
+		try {
+			diff.apply(pane.getDocument());
+		} catch (BadLocationException e) {
+			ErrorMgr.show(e, "Error adding the setters and getters.");
+		}
 
-		docEditor.getEditor().getEditManager().replace(s, out, 0);
+		docEditor.getEditor().getEditManager().replace(diff, -1);
 
-		docEditor.getEditor().getHighlightManager().recalculate();
-		docEditor.getEditor().getHighlightManager().repaint();
+		docEditor.getEditor().getHighlightManager().schedule(diff.getChanged(true));
 
 		PCIE.getWindow().getTabbedPane().setActiveSaved(false);
 
 		docEditor.recalculateLines();
 	}
 
-	public static String insertSettersAndGetters(String s, Range r, ArrayList<Variable> vars) {
-		String out = s.substring(r.getOffset(), r.getEnd() - 1) + "\n";
+	public static String insertSettersAndGetters(CharSequence s, Range r, ArrayList<Variable> vars) {
+		String out = s.subSequence(r.getOffset(), r.getEnd() - 1) + "\n";
 
 		for (int i = 0; i < vars.size(); i++) {
 			Variable v = vars.get(i);
@@ -69,7 +84,7 @@ public class SetterAndGetter {
 		return out + "}";
 	}
 
-	public static boolean alreadyContains(boolean setter, Variable v, String s, Range r) {
+	public static boolean alreadyContains(boolean setter, Variable v, CharSequence s, Range r) {
 		String test;
 
 		if (setter) {
@@ -78,10 +93,10 @@ public class SetterAndGetter {
 			test = v.getGetterName();
 		}
 
-		return s.substring(r.getOffset(), r.getEnd() + 1).contains(test);
+		return s.subSequence(r.getOffset(), r.getEnd() + 1).toString().contains(test);
 	}
 
-	public static ArrayList<Range> splitIntoClasses(String s) {
+	public static ArrayList<Range> splitIntoClasses(CharSequence s) {
 		int len = s.length();
 		char[] hist = createNullCharArray(5);
 		int depth = 0;
@@ -121,7 +136,7 @@ public class SetterAndGetter {
 		return out;
 	}
 
-	public static ArrayList<Variable> parse(String s, Range r) {
+	public static ArrayList<Variable> parse(CharSequence s, Range r) {
 		int len = r.getEnd();
 		char[] hist = createNullCharArray(8);
 		boolean priv = false, stat = false;
@@ -152,7 +167,7 @@ public class SetterAndGetter {
 				primed = true;
 			} else if (lastEqu(hist, ";")) {
 				if (priv && !stat) {
-					append(out, parseLine(s.substring(newline, i)));
+					append(out, parseLine(s.subSequence(newline, i).toString()));
 
 					priv = false;
 				}
@@ -218,7 +233,7 @@ public class SetterAndGetter {
 			c == '_';
 	}
 
-	public static int skip(int i, String s, String escape, int len, char[] hist) {
+	public static int skip(int i, CharSequence s, String escape, int len, char[] hist) {
 		i++;
 		while (i < len) {
 			push(hist, s.charAt(i));
@@ -233,7 +248,7 @@ public class SetterAndGetter {
 		return i;
 	}
 
-	public static int skipString(int i, String s, String escape, int len, char[] hist) {
+	public static int skipString(int i, CharSequence s, String escape, int len, char[] hist) {
 		boolean negateNext = false;
 
 		i++;
@@ -260,14 +275,8 @@ public class SetterAndGetter {
 		return i;
 	}
 
-	public static String getSafeText(EditorPane editor) {
-		try {
-			StyledDocument doc = editor.getStyledDocument();
-			return doc.getText(0, doc.getLength());
-		} catch (Exception e) {
-			ErrorMgr.show(e, "Error getting text to insert setters and getters.");
-			return "";
-		}
+	public static CharSequence getSafeText(EditorPane editor) {
+		return new DocumentText(editor.getStyledDocument());
 	}
 
 	public static char[] createNullCharArray(int size) {
@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-12-22
-*	Modified: 2022-01-01
+*	Modified: 2026-10-18
 *
 *	Handles the settings page.
 */
@@ -82,6 +82,30 @@ public class Settings {
 			"Highlighting",
 			Defaults.HIGHLIGHT
 		);
+		BoolChooser lazyHighlight = new BoolChooser(
+			"Only highlight around the visible text until idle",
+			Defaults.LAZY_HIGHLIGHT
+		);
+		BoolChooser paintHighlight = new BoolChooser(
+			"Paint highlighting instead of styling the text (in new tabs)",
+			Defaults.PAINT_HIGHLIGHT
+		);
+		NumberChooser highlightMargin = new NumberChooser(
+			"Lines highlighted past the visible text",
+			new SpinnerNumberModel(Defaults.HIGHLIGHT_MARGIN, 0, 10000, 10)
+		);
+		NumberChooser pieceTableSize = new NumberChooser(
+			"Open files this many MB or larger as a piece table",
+			new SpinnerNumberModel(Defaults.PIECE_TABLE_SIZE, 0, 1000, 1)
+		);
+		NumberChooser viewerSize = new NumberChooser(
+			"Open files this many MB or larger read-only (0 for never)",
+			new SpinnerNumberModel(Defaults.VIEWER_SIZE, 0, 100000, 1)
+		);
+		NumberChooser undoMemory = new NumberChooser(
+			"MB of undo history kept in memory for each tab (0 for all of it)",
+			new SpinnerNumberModel(Defaults.UNDO_MEMORY, 0, 100000, 1)
+		);
 		BoolChooser activeLine = new BoolChooser(
 			"Active line indication",
 			Defaults.ACTIVE_LINE
@@ -200,8 +224,15 @@ public class Settings {
 		cont.add(showWidth);
 		cont.add(widthIndex);
 		cont.add(findError);
+		cont.add(new Header("Files & Memory"));
+		cont.add(pieceTableSize);
+		cont.add(viewerSize);
+		cont.add(undoMemory);
 		cont.add(new Header("Highlighting"));
 		cont.add(highlight);
+		cont.add(lazyHighlight);
+		cont.add(paintHighlight);
+		cont.add(highlightMargin);
 		cont.add(access);
 		cont.add(classes);
 		cont.add(composite);
@@ -249,6 +280,12 @@ public class Settings {
 				Defaults.IGNORE_CASE = ignoreCase.isSelected();
 				Defaults.TAB_WIDTH = tabWidth.getInt();
 				Defaults.HIGHLIGHT = highlight.isSelected();
+				Defaults.LAZY_HIGHLIGHT = lazyHighlight.isSelected();
+				Defaults.PAINT_HIGHLIGHT = paintHighlight.isSelected();
+				Defaults.HIGHLIGHT_MARGIN = highlightMargin.getInt();
+				Defaults.PIECE_TABLE_SIZE = pieceTableSize.getInt();
+				Defaults.VIEWER_SIZE = viewerSize.getInt();
+				Defaults.UNDO_MEMORY = undoMemory.getInt();
 				Defaults.ACTIVE_LINE = activeLine.isSelected();
 				Defaults.SHOW_WIDTH = showWidth.isSelected();
 				Defaults.WIDTH_INDEX = widthIndex.getInt();
@@ -288,6 +325,7 @@ public class Settings {
 				Defaults.NUM_B = num.isSelected();
 				Defaults.ESCAPE_B = escape.isSelected();
 				
+				LanguageProfile.reload();
 				PCIE.updateOptions();
 				dialog.dispose();
 			}
@@ -0,0 +1,224 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	A styled document that can restyle a whole range of text from a list
+*	of style runs at once. Each paragraph's leaves in the range are swapped
+*	for new ones in a single structural change, so restyling fires one
+*	change event instead of one for every setCharacterAttributes() call.
+*	Replacements close together can also be put in with one replace().
+*/
+
+
+import java.util.ArrayList;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.UndoableEditEvent;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
+import javax.swing.text.StyleContext;
+
+
+@SuppressWarnings("serial")
+public class SyntaxDocument extends DefaultStyledDocument {
+	// Replacements closer together than this are put in as one.
+	private static final int REPLACE_GAP = 256;
+
+	public SyntaxDocument() {
+		super();
+	}
+
+	public SyntaxDocument(Content content) {
+		// Keeps its text in content, such as a PieceContent.
+
+		super(content, new StyleContext());
+	}
+
+	public CharSequence getSnapshot() {
+		// The text as it is now, which stays the same as the document
+		// is edited and can be read from any thread. A piece table can
+		// keep its current tree, and anything else is copied.
+
+		Content content = getContent();
+		if (content instanceof PieceContent) {
+			return ((PieceContent) content).getSnapshot();
+		}
+
+		try {
+			readLock();
+			return getText(0, getLength());
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			readUnlock();
+		}
+	}
+
+	public void setCharacterRuns(	int offset,
+					int length,
+					TokenArray runs,
+					AttributeSet[] styles,
+					AttributeSet normal)
+	{
+		// Styles the text from offset to offset + length. The runs are
+		// relative to offset, sorted and don't overlap, and each one
+		// is styled with styles[style]. Text outside of every run is
+		// styled with normal. Every style replaces what was there.
+
+		length = Math.min(length, getLength() + 1 - offset);
+		if (length <= 0) {
+			return;
+		}
+
+		int end = offset + length;
+
+		try {
+			writeLock();
+
+			DefaultDocumentEvent changes = new DefaultDocumentEvent(
+					offset, length, DocumentEvent.EventType.CHANGE);
+
+			Element root = getDefaultRootElement();
+			int first = root.getElementIndex(offset);
+			int last = root.getElementIndex(end - 1);
+			int run = 0;
+
+			for (int i = first; i <= last; i++) {
+				BranchElement paragraph = (BranchElement) root.getElement(i);
+				int from = paragraph.getElementIndex(offset);
+				int to = paragraph.getElementIndex(end - 1);
+
+				Element[] removed = new Element[to - from + 1];
+				for (int j = from; j <= to; j++) {
+					removed[j - from] = paragraph.getElement(j);
+				}
+
+				ArrayList<Element> added = new ArrayList<Element>();
+				int start = Math.max(offset, paragraph.getStartOffset());
+				int stop = Math.min(end, paragraph.getEndOffset());
+
+				// The parts of the leaves on either side of the
+				// range keep their attributes.
+				Element before = removed[0];
+				if (before.getStartOffset() < start) {
+					added.add(createLeafElement(paragraph,
+						before.getAttributes(),
+						before.getStartOffset(), start));
+				}
+
+				// Skips runs that ended before this paragraph.
+				while (	run < runs.size() &&
+					offset + runs.getStart(run) + runs.getLength(run) <= start)
+				{
+					run++;
+				}
+
+				int p = start;
+				while (p < stop) {
+					int next = stop;
+					AttributeSet attr = normal;
+
+					if (run < runs.size()) {
+						int runStart = offset + runs.getStart(run);
+						int runEnd = runStart + runs.getLength(run);
+
+						if (runStart <= p) {
+							attr = styles[runs.getStyle(run)];
+							next = Math.min(stop, runEnd);
+						} else {
+							next = Math.min(stop, runStart);
+						}
+					}
+
+					added.add(createLeafElement(paragraph, attr, p, next));
+					p = next;
+
+					if (	run < runs.size() &&
+						offset + runs.getStart(run) + runs.getLength(run) <= p)
+					{
+						run++;
+					}
+				}
+
+				Element after = removed[removed.length - 1];
+				if (after.getEndOffset() > stop) {
+					added.add(createLeafElement(paragraph,
+						after.getAttributes(),
+						stop, after.getEndOffset()));
+				}
+
+				Element[] elems = added.toArray(new Element[0]);
+				paragraph.replace(from, removed.length, elems);
+				changes.addEdit(new ElementEdit(paragraph, from, removed, elems));
+			}
+
+			changes.end();
+			fireChangedUpdate(changes);
+			fireUndoableEditUpdate(new UndoableEditEvent(this, changes));
+		} finally {
+			writeUnlock();
+		}
+	}
+
+	public RangeList replaceAll(int[] offsets, int[] lengths, String[] texts)
+					throws BadLocationException
+	{
+		// Replaces the lengths[i] characters at each of offsets with
+		// texts[i]. The offsets are where the text is now, in order, and
+		// don't overlap. Replacements close together are put in as one
+		// replace(), which still fires a remove and an insert event, so
+		// matches spread far apart cost two events each. Returns where
+		// each group of replaced text is now, so only that is relexed.
+
+		RangeList changed = new RangeList();
+		if (offsets.length == 0) {
+			return changed;
+		}
+
+		// How far the replacements before each one move it.
+		int[] shifts = new int[offsets.length + 1];
+		for (int i = 0; i < offsets.length; i++) {
+			shifts[i + 1] = shifts[i] + texts[i].length() - lengths[i];
+		}
+
+		// Groups are done from the last, so the offsets before them
+		// stay where they are.
+		ArrayList<Range> groups = new ArrayList<Range>();
+		int end = offsets.length;
+		while (end > 0) {
+			int start = end - 1;
+			while (start > 0 && offsets[start] - (offsets[start - 1] +
+					lengths[start - 1]) <= REPLACE_GAP) {
+				start--;
+			}
+
+			int from = offsets[start];
+			int to = offsets[end - 1] + lengths[end - 1];
+			String old = getText(from, to - from);
+
+			StringBuilder replaced = new StringBuilder();
+			int at = from;
+			for (int i = start; i < end; i++) {
+				replaced.append(old, at - from, offsets[i] - from);
+				replaced.append(texts[i]);
+				at = offsets[i] + lengths[i];
+			}
+
+			replace(from, to - from, replaced.toString(), null);
+			groups.add(new Range(from + shifts[start],
+					replaced.length()));
+			end = start;
+		}
+
+		for (int i = groups.size() - 1; i >= 0; i--) {
+			Range r = groups.get(i);
+			changed.add(r.getOffset(), r.getEnd());
+		}
+
+		return changed;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	The editor kit for the editor's text pane. It is a styled editor kit,
+*	so the document is still a styled document, but it is shown with a
+*	SyntaxView that paints the highlighting straight from the
+*	HighlightManager instead of from the document's attributes. When the
+*	attributes are used, the SyntaxDocument can restyle text in one go.
+*/
+
+
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.StyledEditorKit;
+import javax.swing.text.View;
+import javax.swing.text.ViewFactory;
+
+
+@SuppressWarnings("serial")
+public class SyntaxKit extends StyledEditorKit implements ViewFactory {
+	@Override
+	public Document createDefaultDocument() {
+		return new SyntaxDocument();
+	}
+
+	@Override
+	public ViewFactory getViewFactory() {
+		return this;
+	}
+
+	public View create(Element elem) {
+		return new SyntaxView(elem);
+	}
+}
@@ -0,0 +1,119 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Shows a document one line at a time, coloring the text with the style
+*	runs that the document's HighlightManager keeps next to it. Nothing
+*	has to be written into the document to highlight it, so it doesn't
+*	get split into an element for every token.
+*
+*	Everything is measured with the plain font, so text is only drawn in
+*	bold where that takes up the same space, or the caret and selection
+*	would drift away from the text after it.
+*/
+
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.PlainView;
+import javax.swing.text.Segment;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.Utilities;
+
+
+public class SyntaxView extends PlainView {
+	private Segment text = new Segment();
+	private Font font, bold;
+	private FontMetrics metrics, boldMetrics;
+
+	public SyntaxView(Element elem) {
+		super(elem);
+	}
+
+	@Override
+	protected float drawUnselectedText(Graphics2D g, float x, float y,
+					int p0, int p1) throws BadLocationException
+	{
+		HighlightManager mgr = (HighlightManager) getDocument()
+					.getProperty(HighlightManager.class);
+
+		if (mgr == null || !mgr.paintsRuns()) {
+			return super.drawUnselectedText(g, x, y, p0, p1);
+		}
+
+		Font f = getContainer().getFont();
+		if (f != font) {
+			font = f;
+			bold = f.deriveFont(Font.BOLD);
+			metrics = getContainer().getFontMetrics(font);
+			boldMetrics = getContainer().getFontMetrics(bold);
+		}
+
+		Color normal = getContainer().getForeground();
+		RangeList runs = mgr.getRuns();
+		RangeList brackets = mgr.getBrackets();
+		int run = runs.firstEndingAfter(p0);
+		int bracket = brackets.firstEndingAfter(p0);
+
+		// Draws the text in pieces that are all the same style,
+		// a piece ending wherever a run or a bracket starts or ends.
+		int p = p0;
+		while (p < p1) {
+			int next = p1;
+			Color color = normal;
+			boolean isBold = false;
+
+			if (run < runs.size() && runs.getStart(run) <= p) {
+				AttributeSet style = mgr.getStyle(runs.getValue(run));
+				color = StyleConstants.getForeground(style);
+				isBold = StyleConstants.isBold(style);
+				next = Math.min(next, runs.getEnd(run));
+			} else if (run < runs.size()) {
+				next = Math.min(next, runs.getStart(run));
+			}
+
+			if (	bracket < brackets.size() &&
+				brackets.getStart(bracket) <= p)
+			{
+				color = mgr.getBracketColor();
+				next = Math.min(next, brackets.getEnd(bracket));
+			} else if (bracket < brackets.size()) {
+				next = Math.min(next, brackets.getStart(bracket));
+			}
+
+			getDocument().getText(p, next - p, text);
+			g.setColor(color);
+			g.setFont((isBold && sameWidth(x, p)) ? bold : font);
+			x = Utilities.drawTabbedText(text, x, y, g, this, p);
+
+			p = next;
+			while (run < runs.size() && runs.getEnd(run) <= p) {
+				run++;
+			}
+
+			while (	bracket < brackets.size() &&
+				brackets.getEnd(bracket) <= p)
+			{
+				bracket++;
+			}
+		}
+
+		g.setFont(font);
+		return x;
+	}
+
+	private boolean sameWidth(float x, int p) {
+		// Whether the text last read takes up as much space in bold as
+		// it does in the plain font, which fixed width fonts mostly do.
+
+		return	Utilities.getTabbedTextWidth(text, boldMetrics, x, this, p) ==
+			Utilities.getTabbedTextWidth(text, metrics, x, this, p);
+	}
+}
@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-08-30
-*	Modified: 2021-11-03
+*	Modified: 2026-10-18
 *
 *	The tab bar portion of the tabbed pane, responsible for
 *	rendering each tab.
@@ -41,6 +41,7 @@ public class TabBar extends JComponent implements MouseMotionListener,MouseListe
 	private final Color BUTTON_COLOR = new Color(220, 220, 220);
 	private final Color X_COLOR = Color.BLACK;
 	private final Color ADD_X_COLOR = new Color(125, 125, 125);
+	private final Color PROGRESS_COLOR = new Color(70, 110, 200);
 
 	private final BasicStroke ADD_X_STROKE =
 		new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
@@ -52,6 +53,7 @@ public class TabBar extends JComponent implements MouseMotionListener,MouseListe
 	private final int ADD_WIDTH = 30, ADD_BUTTON_SIZE = 15, ADD_X_SIZE = 8;
 	private final int SCROLL_SPEED = 30, DRAG_SCROLL = 20, DRAG_SCROLL_SPEED = 10;
 	private final int UNSAVED_POSITION = 2, UNSAVED_SIZE = 7;
+	private final int PROGRESS_HEIGHT = 2;
 	private final int ANIMATION_SPEED = 25;
 
 	private final Font font;
@@ -358,7 +360,7 @@ public class TabBar extends JComponent implements MouseMotionListener,MouseListe
 				if (addActive) {
 					parent.open(null, true);
 				} else if (removeActive != -1 && closing == -1) {
-					PCIE.getWindow().closeTab(removeActive, false);
+					PCIE.getWindow().closeTab(removeActive);
 				}
 			}
 
@@ -403,6 +405,11 @@ public class TabBar extends JComponent implements MouseMotionListener,MouseListe
 		repaint();
 	}
 	
+	public void setProgressAt(int index, double progress) {
+		info.get(index).progress = progress;
+		repaint();
+	}
+
 	public boolean getActiveSaved() {
 		return info.get(active).isSaved;
 	}
@@ -485,6 +492,16 @@ public class TabBar extends JComponent implements MouseMotionListener,MouseListe
 		gg.drawLine(buttonX + halfXSize, middle - halfXSize,
 			buttonX - halfXSize, middle + halfXSize);
 
+		// A file that is still being read has a bar along the bottom
+		// of its tab showing how much of it has been read.
+		if (info.get(i).progress >= 0) {
+			gg.setColor(PROGRESS_COLOR);
+			gg.fillRect(info.get(i).position + TEXT_OFFSET - scrollOffset,
+				TAB_HEIGHT - PROGRESS_HEIGHT - 1,
+				(int)((TAB_WIDTH - TEXT_OFFSET - CLOSE_SIZE) * info.get(i).progress),
+				PROGRESS_HEIGHT);
+		}
+
 		if (!info.get(i).isSaved) {
 			gg.setColor(Color.RED);
 			gg.fillOval(info.get(i).position + UNSAVED_POSITION - scrollOffset,
@@ -559,6 +576,7 @@ public class TabBar extends JComponent implements MouseMotionListener,MouseListe
 		private String title;
 		private int position, preferredPosition;
 		private boolean isSaved = true;
+		private double progress = -1;
 
 		public TabInfo(String title, int position) {
 			this.title = title;
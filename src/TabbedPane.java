@@ -1,7 +1,7 @@
 /*
 *	Author: Rhys B.
 *	Created: 2021-08-30
-*	Modified: 2021-12-31
+*	Modified: 2026-10-18
 *
 *	A custom tabbed pane that allows for dragging
 *	of tabs into a new order.
@@ -24,6 +24,8 @@ import java.io.File;
 
 import java.util.ArrayList;
 
+import java.util.concurrent.Future;
+
 @SuppressWarnings("serial")
 public class TabbedPane extends JPanel {
 	private TabBar bar = new TabBar(this);
@@ -50,6 +52,7 @@ public class TabbedPane extends JPanel {
 				if (editors.get(active).inUse() || forceNewTab) {
 					addLast(editor, f);
 				} else {
+					editors.get(active).close();
 					editors.set(active, editor);
 					bar.setFile(active, f);
 					bar.setActive(active);
@@ -63,6 +66,33 @@ public class TabbedPane extends JPanel {
 		}
 	}
 
+	// Opens a tab with the edits from a journal put back, or puts them
+	// in the file's tab if it is already open. Returns false if they
+	// couldn't be.
+	public boolean recover(EditJournal.Recovery recovery) {
+		File f = recovery.getFile();
+		DocEditor editor = null;
+
+		for (int i = 0; i < editors.size() && f != null; i++) {
+			if (f.equals(editors.get(i).getFile())) {
+				editor = editors.get(i);
+			}
+		}
+
+		// The tab is opened for editing whatever the file's size, since
+		// the edits can't be put back into the viewer.
+		if (editor == null) {
+			try {
+				editor = new DocEditor(f, DocEditor.usePieceTable(f));
+				addLast(editor, f);
+			} catch (Exception e) {
+				return false;
+			}
+		}
+
+		return editor.recover(recovery);
+	}
+
 	public void setActiveIndex(int i) {
 		bar.setActive(i);
 	}
@@ -74,11 +104,20 @@ public class TabbedPane extends JPanel {
 	}
 
 	public void removeFile(int index) {
+		// The tokens are cached before the editor is closed, since a
+		// file that hasn't been read in all the way isn't cached, and
+		// closing stops the reading.
 		if (editors.get(index).getFile() != null) {
 			closed.remove(editors.get(index).getFile());
 			closed.add(0, editors.get(index).getFile());
+
+			if (getSaved(index)) {
+				editors.get(index).cacheTokens();
+			}
 		}
 
+		editors.get(index).close();
+
 		editors.remove(index);
 		bar.removeFile(index);
 		
@@ -96,6 +135,33 @@ public class TabbedPane extends JPanel {
 		}
 	}
 
+	// Reopens the active tab's file with its text kept in a piece table,
+	// or in a gap buffer, whichever its size wouldn't have picked. The
+	// tab has to be saved first, since it is read back in from the file,
+	// and a file being viewed is opened for editing from the viewer.
+	public void reopenActive(boolean pieceTable) {
+		int active = bar.getActive();
+		File f = editors.get(active).getFile();
+
+		if (	f == null || editors.get(active).isViewing() ||
+			editors.get(active).usesPieceTable() == pieceTable)
+		{
+			return;
+		}
+
+		try {
+			DocEditor editor = new DocEditor(f, pieceTable);
+
+			editors.get(active).cacheTokens();
+			editors.get(active).close();
+			editors.set(active, editor);
+			bar.setFile(active, f);
+			bar.setActive(active);
+		} catch (Exception e) {
+			// The tab is left as it was.
+		}
+	}
+
 	// Reopens the previously closed tabs.
 	public void reopen() {
 		if (closed.size() > 0) {
@@ -147,19 +213,28 @@ public class TabbedPane extends JPanel {
 		return editors.get(bar.getActive());
 	}
 
-	public void save() {
-		save(getPosition());
+	public Future<Boolean> save() {
+		return save(getPosition());
 	}
 	
-	public void save(int index) {
-		getComponentAt(index).save();
-		setSavedAt(index, true);
+	// Saves happen in the background, and the editor marks its
+	// tab saved once its save is done. The save is returned, or
+	// null if it couldn't be started.
+	public Future<Boolean> save(int index) {
+		return getComponentAt(index).save();
+	}
+
+	public Future<Boolean> saveAs(File file) {
+		return saveAs(getPosition(), file);
 	}
 
-	public void saveAs(File file) {
-		getActiveComponent().saveAs(file);
-		bar.setFile(bar.getActive(), file);
-		setActiveSaved(true);
+	public Future<Boolean> saveAs(int index, File file) {
+		Future<Boolean> save = getComponentAt(index).saveAs(file);
+		if (save != null) {
+			bar.setFile(index, file);
+		}
+
+		return save;
 	}
 
 	public void copy() {
@@ -197,6 +272,27 @@ public class TabbedPane extends JPanel {
 	public void setSavedAt(int index, boolean saved) {
 		bar.setSavedAt(index, saved);
 	}
+
+	public void setSaved(DocEditor editor, boolean saved) {
+		// Sets the saved state of editor's tab, if it is still open.
+
+		int index = editors.indexOf(editor);
+
+		if (index >= 0) {
+			bar.setSavedAt(index, saved);
+		}
+	}
+
+	public void setProgress(DocEditor editor, double progress) {
+		// Shows how far along editor is in reading its file, or
+		// nothing if progress is negative.
+
+		int index = editors.indexOf(editor);
+
+		if (index >= 0) {
+			bar.setProgressAt(index, progress);
+		}
+	}
 	
 	public boolean getActiveSaved() {
 		return bar.getActiveSaved();
@@ -240,6 +336,10 @@ public class TabbedPane extends JPanel {
 		return bar.getActiveTitle();
 	}
 	
+	public int indexOf(DocEditor editor) {
+		return editors.indexOf(editor);
+	}
+
 	public int getTabCount() {
 		return editors.size();
 	}
@@ -270,9 +370,11 @@ public class TabbedPane extends JPanel {
 		}
 	}
 
+	// Starts saving every tab with a file that has changed. Anything that
+	// needs the files saved waits for them with SaveService.whenSaved().
 	public void saveKnown() {
 		for (int i = 0; i < editors.size(); i++) {
-			if (editors.get(i).hasFile()) {
+			if (editors.get(i).hasFile() && !getSaved(i)) {
 				save(i);
 			}
 		}
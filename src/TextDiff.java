@@ -0,0 +1,374 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	The differences between two versions of a document's text, as a list
+*	of hunks that each replace some text with other text. Used for edits
+*	that rewrite the whole document, like formatting the indentation, so
+*	only what changed is put in the document and kept for undoing it.
+*
+*	Lines are compared first, with Myers' diff, and lines that changed
+*	into the same number of lines are then compared character by character,
+*	so a line that only had its indentation changed keeps just that.
+*/
+
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+
+public class TextDiff {
+	// Past this many lines added and removed, the lines left are taken
+	// as one block, since finding the shortest diff would take too long.
+	private static final int MAX_DIFFERENCE = 500;
+
+	// Where each hunk is in the text before. What each one was and is
+	// are kept one after another in olds and news, each hunk's ending
+	// where the next one's starts, since most hunks are only a few
+	// characters long.
+	private int[] offsets, oldEnds, newEnds;
+	private String olds, news;
+
+	private ArrayList<Integer> found = new ArrayList<Integer>();
+	private StringBuilder foundOlds = new StringBuilder();
+	private StringBuilder foundNews = new StringBuilder();
+
+	public TextDiff(String before, String after) {
+		int[] a = lineStarts(before), b = lineStarts(after);
+		int n = a.length - 1, m = b.length - 1;
+
+		// Lines that are the same at the start and end are skipped.
+		int start = 0;
+		while (start < n && start < m && sameLine(before, a, start, after, b, start)) {
+			start++;
+		}
+
+		int end = 0;
+		while (end < n - start && end < m - start &&
+			sameLine(before, a, n - 1 - end, after, b, m - 1 - end)) {
+			end++;
+		}
+
+		int[][] matches = match(before, a, start, n - end, after, b, start, m - end);
+
+		// Each gap between matching lines is a changed block.
+		int i = start, j = start;
+		for (int k = 0; k <= matches.length; k++) {
+			int x = (k < matches.length) ? matches[k][0] : n - end;
+			int y = (k < matches.length) ? matches[k][1] : m - end;
+
+			if (x > i || y > j) {
+				addBlock(before, a, i, x, after, b, j, y);
+			}
+
+			i = x + 1;
+			j = y + 1;
+		}
+
+		offsets = new int[found.size() / 3];
+		oldEnds = new int[offsets.length];
+		newEnds = new int[offsets.length];
+		for (int k = 0; k < offsets.length; k++) {
+			offsets[k] = found.get(3 * k);
+			oldEnds[k] = found.get(3 * k + 1);
+			newEnds[k] = found.get(3 * k + 2);
+		}
+		olds = foundOlds.toString();
+		news = foundNews.toString();
+
+		found = null;
+		foundOlds = null;
+		foundNews = null;
+	}
+
+	public TextDiff(DataInputStream in) throws IOException {
+		// Reads back a diff that was written out with write().
+
+		offsets = new int[in.readInt()];
+		oldEnds = new int[offsets.length];
+		newEnds = new int[offsets.length];
+
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = in.readInt();
+			oldEnds[i] = in.readInt();
+			newEnds[i] = in.readInt();
+		}
+
+		olds = readString(in);
+		news = readString(in);
+	}
+
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(offsets.length);
+
+		for (int i = 0; i < offsets.length; i++) {
+			out.writeInt(offsets[i]);
+			out.writeInt(oldEnds[i]);
+			out.writeInt(newEnds[i]);
+		}
+
+		out.writeInt(olds.length());
+		out.writeChars(olds);
+		out.writeInt(news.length());
+		out.writeChars(news);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		char[] chars = new char[in.readInt()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = in.readChar();
+		}
+
+		return new String(chars);
+	}
+
+	private static int[] lineStarts(String s) {
+		// The offset each line starts at, followed by the length of s.
+		// A line includes its newline.
+
+		int count = 2;
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) == '\n') {
+				count++;
+			}
+		}
+
+		int[] starts = new int[count];
+		int line = 1;
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) == '\n') {
+				starts[line++] = i + 1;
+			}
+		}
+		starts[line] = s.length();
+
+		return starts;
+	}
+
+	private static boolean sameLine(String s, int[] a, int i, String t, int[] b, int j) {
+		int length = a[i + 1] - a[i];
+
+		return length == b[j + 1] - b[j] && s.regionMatches(a[i], t, b[j], length);
+	}
+
+	private static int[][] match(String s, int[] a, int aStart, int aEnd,
+					String t, int[] b, int bStart, int bEnd) {
+		// Finds the most lines from aStart to aEnd of s that match lines
+		// from bStart to bEnd of t, in order, as pairs of line numbers.
+		// If the lines differ by too much, none are matched.
+
+		int n = aEnd - aStart, m = bEnd - bStart;
+		int max = Math.min(n + m, MAX_DIFFERENCE);
+		int center = max + 1;
+
+		int[] v = new int[2 * max + 3];
+		ArrayList<int[]> trace = new ArrayList<int[]>();
+		int found = -1;
+
+		for (int d = 0; d <= max && found == -1; d++) {
+			trace.add(v.clone());
+
+			for (int k = -d; k <= d; k += 2) {
+				int x;
+				if (k == -d || (k != d && v[center + k - 1] < v[center + k + 1])) {
+					x = v[center + k + 1];
+				} else {
+					x = v[center + k - 1] + 1;
+				}
+
+				int y = x - k;
+				while (x < n && y < m &&
+					sameLine(s, a, aStart + x, t, b, bStart + y)) {
+					x++;
+					y++;
+				}
+
+				v[center + k] = x;
+
+				if (x >= n && y >= m) {
+					found = d;
+					break;
+				}
+			}
+		}
+
+		if (found == -1) {
+			return new int[0][];
+		}
+
+		// Goes back through the steps taken, from the end, picking out
+		// the lines that were matched along the way.
+		ArrayList<int[]> matches = new ArrayList<int[]>();
+		int x = n, y = m;
+
+		for (int d = found; d >= 0; d--) {
+			int[] prev = trace.get(d);
+			int k = x - y;
+
+			int prevK;
+			if (k == -d || (k != d && prev[center + k - 1] < prev[center + k + 1])) {
+				prevK = k + 1;
+			} else {
+				prevK = k - 1;
+			}
+
+			int prevX = prev[center + prevK];
+			int prevY = prevX - prevK;
+
+			while (x > prevX && y > prevY) {
+				x--;
+				y--;
+				matches.add(new int[] {aStart + x, bStart + y});
+			}
+
+			x = prevX;
+			y = prevY;
+		}
+
+		int[][] ordered = new int[matches.size()][];
+		for (int i = 0; i < ordered.length; i++) {
+			ordered[i] = matches.get(ordered.length - 1 - i);
+		}
+
+		return ordered;
+	}
+
+	private void addBlock(String s, int[] a, int aStart, int aEnd,
+				String t, int[] b, int bStart, int bEnd) {
+		// Adds hunks for lines aStart to aEnd of s being changed into
+		// lines bStart to bEnd of t, a line at a time if there are as
+		// many of each.
+
+		if (aEnd - aStart == bEnd - bStart) {
+			for (int i = 0; i < aEnd - aStart; i++) {
+				addHunk(s, a[aStart + i], a[aStart + i + 1],
+					t, b[bStart + i], b[bStart + i + 1]);
+			}
+		} else {
+			addHunk(s, a[aStart], a[aEnd], t, b[bStart], b[bEnd]);
+		}
+	}
+
+	private void addHunk(String s, int sStart, int sEnd, String t, int tStart, int tEnd) {
+		// Only the characters that differ are kept.
+
+		while (sStart < sEnd && tStart < tEnd && s.charAt(sStart) == t.charAt(tStart)) {
+			sStart++;
+			tStart++;
+		}
+
+		while (sEnd > sStart && tEnd > tStart && s.charAt(sEnd - 1) == t.charAt(tEnd - 1)) {
+			sEnd--;
+			tEnd--;
+		}
+
+		// A surrogate pair is never split between a hunk and the text
+		// around it.
+		if (sStart > 0 && Character.isHighSurrogate(s.charAt(sStart - 1))) {
+			sStart--;
+			tStart--;
+		}
+		if (sEnd < s.length() && Character.isLowSurrogate(s.charAt(sEnd))) {
+			sEnd++;
+			tEnd++;
+		}
+
+		if (sStart < sEnd || tStart < tEnd) {
+			foundOlds.append(s, sStart, sEnd);
+			foundNews.append(t, tStart, tEnd);
+
+			found.add(sStart);
+			found.add(foundOlds.length());
+			found.add(foundNews.length());
+		}
+	}
+
+	public boolean isEmpty() {
+		return offsets.length == 0;
+	}
+
+	public void apply(Document doc) throws BadLocationException {
+		// Changes doc from the text before to the text after. The hunks
+		// are put in from the last one, so the offsets stay right.
+
+		for (int i = offsets.length - 1; i >= 0; i--) {
+			replace(doc, offsets[i], oldLength(i), news, newStart(i), newEnds[i]);
+		}
+	}
+
+	public void revert(Document doc) throws BadLocationException {
+		// Changes doc from the text after back to the text before.
+
+		int shift = shift(offsets.length - 1);
+
+		for (int i = offsets.length - 1; i >= 0; i--) {
+			replace(doc, offsets[i] + shift, newLength(i), olds, oldStart(i), oldEnds[i]);
+
+			if (i > 0) {
+				shift -= newLength(i - 1) - oldLength(i - 1);
+			}
+		}
+	}
+
+	private int oldStart(int hunk) {
+		return (hunk == 0) ? 0 : oldEnds[hunk - 1];
+	}
+
+	private int newStart(int hunk) {
+		return (hunk == 0) ? 0 : newEnds[hunk - 1];
+	}
+
+	private int oldLength(int hunk) {
+		return oldEnds[hunk] - oldStart(hunk);
+	}
+
+	private int newLength(int hunk) {
+		return newEnds[hunk] - newStart(hunk);
+	}
+
+	private int shift(int hunk) {
+		// How far the hunks before this one have moved it in the text
+		// after from where it was in the text before.
+
+		return (hunk <= 0) ? 0 : newStart(hunk) - oldStart(hunk);
+	}
+
+	private static void replace(Document doc, int offset, int length,
+			String text, int start, int end) throws BadLocationException {
+		if (length > 0) {
+			doc.remove(offset, length);
+		}
+		if (end > start) {
+			doc.insertString(offset, text.substring(start, end), null);
+		}
+	}
+
+	public Range getChanged(boolean after) {
+		// The range from the start of the first hunk to the end of the
+		// last, in the text after if after is true.
+
+		if (offsets.length == 0) {
+			return new Range(0, 0);
+		}
+
+		int last = offsets.length - 1;
+		int start = offsets[0];
+		int end = offsets[last] + (after ? shift(last) + newLength(last) :
+						oldLength(last));
+
+		return new Range(start, end - start);
+	}
+
+	public long getMemory() {
+		// Roughly how many bytes the hunks take up.
+
+		return 12L * offsets.length + 2L * (olds.length() + news.length()) + 100;
+	}
+}
@@ -0,0 +1,144 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Finds every place a string is in a document, with Boyer-Moore-Horspool.
+*	Each try compares the last char of the string first and, when it doesn't
+*	match, skips ahead by how far that char is from the end of the string,
+*	so most of the text is never looked at. The text is read straight out of
+*	the document's content as a Segment, so nothing is made for each try.
+*
+*	Cases are ignored the same way as String.equalsIgnoreCase(), by folding
+*	each char to the lower case of its upper case.
+*/
+
+
+import java.util.Arrays;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+
+public class TextSearch {
+	// The skips are looked up by the low byte of each char, so chars
+	// sharing one share the smallest skip of any of them.
+	private static final int TABLE_SIZE = 256;
+
+	// The folded case of every char, made the first time it is needed.
+	private static char[] folds = null;
+
+	private char[] needle;
+	private boolean ignoreCase;
+	private int[] skips = new int[TABLE_SIZE];
+
+	private Segment text = new Segment();
+
+	public TextSearch(String needle, boolean ignoreCase) {
+		this.needle = needle.toCharArray();
+		this.ignoreCase = ignoreCase;
+
+		if (ignoreCase) {
+			char[] fold = getFolds();
+			for (int i = 0; i < this.needle.length; i++) {
+				this.needle[i] = fold[this.needle[i]];
+			}
+		}
+
+		int last = this.needle.length - 1;
+
+		Arrays.fill(skips, Math.max(this.needle.length, 1));
+		for (int i = 0; i < last; i++) {
+			skips[this.needle[i] % TABLE_SIZE] = last - i;
+		}
+	}
+
+	private static synchronized char[] getFolds() {
+		if (folds == null) {
+			char[] fold = new char[Character.MAX_VALUE + 1];
+			for (int c = 0; c < fold.length; c++) {
+				fold[c] = Character.toLowerCase(Character.toUpperCase((char) c));
+			}
+
+			folds = fold;
+		}
+
+		return folds;
+	}
+
+	public int length() {
+		return needle.length;
+	}
+
+	public int[] findAll(Document doc) throws BadLocationException {
+		return findAll(doc, 0, doc.getLength());
+	}
+
+	public int[] findAll(Document doc, int start, int end) throws BadLocationException {
+		// The offsets of every match that is wholly from start to end
+		// in doc, in order, including ones that overlap.
+
+		int len = needle.length;
+		if (len == 0 || end - start < len) {
+			return new int[0];
+		}
+
+		// The content only copies the text if it is split around
+		// where the document was last edited.
+		text.setPartialReturn(false);
+		doc.getText(start, end - start, text);
+
+		char[] a = text.array;
+		char[] fold = ignoreCase ? getFolds() : null;
+		int last = len - 1;
+		char lastChar = needle[last];
+
+		int[] found = new int[16];
+		int count = 0;
+
+		int i = text.offset;
+		int stop = text.offset + text.count - len;
+
+		while (i <= stop) {
+			char c = a[i + last];
+			if (fold != null) {
+				c = fold[c];
+			}
+
+			if (c == lastChar && matches(a, i, fold)) {
+				if (count == found.length) {
+					found = Arrays.copyOf(found, count * 2);
+				}
+				found[count++] = start + i - text.offset;
+			}
+
+			i += skips[c % TABLE_SIZE];
+		}
+
+		// The content's array isn't kept hold of.
+		text.array = null;
+
+		return Arrays.copyOf(found, count);
+	}
+
+	private boolean matches(char[] a, int at, char[] fold) {
+		// Checks the rest of the needle, the last char having matched.
+
+		if (fold == null) {
+			for (int j = needle.length - 2; j >= 0; j--) {
+				if (a[at + j] != needle[j]) {
+					return false;
+				}
+			}
+		} else {
+			for (int j = needle.length - 2; j >= 0; j--) {
+				if (fold[a[at + j]] != needle[j]) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+}
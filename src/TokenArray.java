@@ -0,0 +1,82 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	A list of styled tokens, each one a start, a length and a style,
+*	packed one after another into a single int array.
+*/
+
+
+import java.util.Arrays;
+
+
+public class TokenArray {
+	private int[] data = new int[3 * 64];
+	private int size = 0;
+
+	public void add(int start, int length, int style) {
+		if (length <= 0) {
+			return;
+		}
+
+		if (size * 3 == data.length) {
+			int[] arr = new int[data.length * 2];
+			System.arraycopy(data, 0, arr, 0, data.length);
+			data = arr;
+		}
+
+		data[size * 3] = start;
+		data[size * 3 + 1] = length;
+		data[size * 3 + 2] = style;
+		size++;
+	}
+
+	public TokenArray flatten(int length) {
+		// Returns the runs of text from 0 to length that end up in
+		// each style once every token is painted in order, a later
+		// token painting over an earlier one. Unstyled text is left
+		// out.
+
+		int[] styles = new int[length];
+		Arrays.fill(styles, -1);
+
+		for (int i = 0; i < size; i++) {
+			int start = Math.max(getStart(i), 0);
+			int end = Math.min(getStart(i) + getLength(i), length);
+
+			Arrays.fill(styles, start, Math.max(start, end), getStyle(i));
+		}
+
+		TokenArray runs = new TokenArray();
+		int start = 0;
+
+		for (int i = 1; i <= length; i++) {
+			if (i == length || styles[i] != styles[start]) {
+				if (styles[start] != -1) {
+					runs.add(start, i - start, styles[start]);
+				}
+
+				start = i;
+			}
+		}
+
+		return runs;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getStart(int i) {
+		return data[i * 3];
+	}
+
+	public int getLength(int i) {
+		return data[i * 3 + 1];
+	}
+
+	public int getStyle(int i) {
+		return data[i * 3 + 2];
+	}
+}
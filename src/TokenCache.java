@@ -0,0 +1,313 @@
+/*
+*	Author: Rhys B.
+*	Created: 2026-10-18
+*	Modified: 2026-10-18
+*
+*	Keeps the highlighting of recently closed files on disk, next to the
+*	user data file, so that reopening one can show it highlighted straight
+*	away instead of waiting for it to be lexed and painted again. Each file
+*	is keyed by its path, size, modified time and a hash of its text, and
+*	the least recently used files are dropped once the cache is full.
+*/
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+public class TokenCache {
+	private static final File file =
+			new File(Defaults.working + "/brocessing_token_cache.bin");
+
+	// Changes whenever the format, or the way text is lexed or
+	// tokenized, changes, so old caches are thrown out.
+	private static final int	MAGIC = 0x50544b43,
+					VERSION = 1;
+
+	private static final int	MAX_ENTRIES = 64,
+					MAX_INTS = 2 * 1024 * 1024;
+
+	// Ordered from least to most recently used.
+	private static LinkedHashMap<String, Entry> entries = null;
+	private static long ints = 0;
+
+	private static Thread writer = null;
+	private static boolean dirty = false;
+
+	private static class Entry {
+		private long size, modified, hash;
+		private int[][] tokens;
+
+		private int count() {
+			int count = 0;
+
+			for (int i = 0; i < tokens.length; i++) {
+				count += tokens[i].length;
+			}
+
+			return count;
+		}
+	}
+
+	public static synchronized int[][] get(File source, CharSequence text) {
+		// Returns the tokens stored for source, or null if there are none
+		// or they were stored for a different version of it.
+
+		load();
+
+		String key = keyOf(source);
+		Entry entry = (key == null) ? null : entries.get(key);
+
+		if (	entry == null ||
+			entry.size != source.length() ||
+			entry.modified != source.lastModified() ||
+			entry.hash != hash(text))
+		{
+			return null;
+		}
+
+		return entry.tokens;
+	}
+
+	public static synchronized void put(File source, CharSequence text, int[][] tokens) {
+		// Stores the tokens for source, whose text is text, and
+		// writes the cache out on its own thread.
+
+		String key = keyOf(source);
+		if (key == null || tokens == null) {
+			return;
+		}
+
+		load();
+
+		Entry entry = new Entry();
+		entry.size = source.length();
+		entry.modified = source.lastModified();
+		entry.hash = hash(text);
+		entry.tokens = tokens;
+
+		Entry old = entries.remove(key);
+		if (old != null) {
+			ints -= old.count();
+		}
+
+		entries.put(key, entry);
+		ints += entry.count();
+
+		Iterator<Entry> it = entries.values().iterator();
+		while (entries.size() > 1 &&
+				(entries.size() > MAX_ENTRIES || ints > MAX_INTS)) {
+			ints -= it.next().count();
+			it.remove();
+		}
+
+		write();
+	}
+
+	private static String keyOf(File source) {
+		try {
+			return source.getCanonicalPath();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	public static long hash(CharSequence text) {
+		// A 64 bit FNV-1a hash of the text.
+
+		long h = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < text.length(); i++) {
+			h ^= text.charAt(i);
+			h *= 0x100000001b3L;
+		}
+
+		return h;
+	}
+
+	private static void load() {
+		if (entries != null) {
+			return;
+		}
+
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		ints = 0;
+
+		if (!file.exists()) {
+			return;
+		}
+
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return;
+			}
+
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+
+				Entry entry = new Entry();
+				entry.size = in.readLong();
+				entry.modified = in.readLong();
+				entry.hash = in.readLong();
+				entry.tokens = new int[in.readUnsignedByte()][];
+
+				for (int j = 0; j < entry.tokens.length; j++) {
+					entry.tokens[j] = readInts(in);
+				}
+
+				entries.put(key, entry);
+				ints += entry.count();
+			}
+		} catch (Exception e) {
+			// The cache only saves time, so one that can't be read
+			// is started over instead of being reported.
+			entries.clear();
+			ints = 0;
+		}
+	}
+
+	private static void write() {
+		// Only one thread writes at a time. Anything stored while it
+		// is writing has it write again once it is done.
+
+		dirty = true;
+
+		if (writer != null) {
+			return;
+		}
+
+		writer = new Thread(new Runnable() {
+			public void run() {
+				while (true) {
+					ArrayList<Map.Entry<String, Entry>> list;
+
+					synchronized (TokenCache.class) {
+						if (!dirty) {
+							writer = null;
+							return;
+						}
+
+						dirty = false;
+						list = new ArrayList<Map.Entry<String, Entry>>(
+								entries.entrySet());
+					}
+
+					writeEntries(list);
+				}
+			}
+		}, "Token Cache");
+
+		writer.start();
+	}
+
+	private static void writeEntries(ArrayList<Map.Entry<String, Entry>> list) {
+		// Writes to a temporary file first, so a cache that is cut
+		// off part way through never replaces a whole one.
+
+		File temp = new File(file.getPath() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temp)))) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(list.size());
+
+			for (int i = 0; i < list.size(); i++) {
+				Entry entry = list.get(i).getValue();
+
+				out.writeUTF(list.get(i).getKey());
+				out.writeLong(entry.size);
+				out.writeLong(entry.modified);
+				out.writeLong(entry.hash);
+				out.writeByte(entry.tokens.length);
+
+				for (int j = 0; j < entry.tokens.length; j++) {
+					writeInts(out, entry.tokens[j]);
+				}
+			}
+		} catch (Exception e) {
+			temp.delete();
+			return;
+		}
+
+		try {
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (Exception e) {
+			temp.delete();
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values)
+						throws IOException {
+		// Tokens are mostly small, increasing numbers, so each one is
+		// written as its difference from the last, in as few bytes as
+		// it fits in with seven bits to a byte.
+
+		writeVarInt(out, values.length);
+
+		int last = 0;
+		for (int i = 0; i < values.length; i++) {
+			int delta = values[i] - last;
+			writeVarInt(out, (delta << 1) ^ (delta >> 31));
+			last = values[i];
+		}
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException {
+		int[] values = new int[readVarInt(in)];
+
+		int last = 0;
+		for (int i = 0; i < values.length; i++) {
+			int zigzag = readVarInt(in);
+			last += (zigzag >>> 1) ^ -(zigzag & 1);
+			values[i] = last;
+		}
+
+		return values;
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value)
+						throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Malformed token cache.");
+	}
+}